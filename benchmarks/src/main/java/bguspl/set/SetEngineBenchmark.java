@@ -0,0 +1,131 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks of the set engine and the card encoding in UtilImpl.
+ * Every invocation works on the next of a few precomputed random inputs, so the branch predictor cannot learn them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetEngineBenchmark {
+
+    private static final int INPUTS = 1 << 8;
+    private static final long SEED = 0x5E7;
+
+    /**
+     * The deck geometry: FeatureSize x FeatureCount.
+     */
+    @Param({"3x4", "3x6", "4x4", "5x3"})
+    public String features;
+
+    /**
+     * The number of cards searched for sets.
+     */
+    @Param({"12", "21"})
+    public int tableSize;
+
+    private UtilImpl util;
+    private int setSize;
+
+    /**
+     * Candidate sets of setSize cards, half of them legal.
+     */
+    private int[][] candidates;
+
+    /**
+     * Random tables of tableSize distinct cards.
+     */
+    private int[][] tables;
+    private List<List<Integer>> tableLists;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] geometry = features.split("x");
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureSize", geometry[0]);
+        properties.put("FeatureCount", geometry[1]);
+        Config config = new Config(Logger.getLogger("benchmark"), properties);
+        util = new UtilImpl(config);
+        setSize = util.setSize();
+
+        Random random = new Random(SEED);
+        candidates = new int[INPUTS][];
+        tables = new int[INPUTS][];
+        for (int i = 0; i < INPUTS; i++) {
+            candidates[i] = randomCards(random, config.deckSize, setSize);
+            int last = util.completeSet(candidates[i], setSize - 1);
+            if (i % 2 == 0 && last >= 0 && IntStream.of(candidates[i]).limit(setSize - 1).noneMatch(card -> card == last))
+                candidates[i][setSize - 1] = last;
+            tables[i] = randomCards(random, config.deckSize, tableSize);
+        }
+        tableLists = IntStream.range(0, INPUTS)
+                .mapToObj(i -> IntStream.of(tables[i]).boxed().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static int[] randomCards(Random random, int deckSize, int count) {
+        return random.ints(0, deckSize).distinct().limit(count).toArray();
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(candidates[nextInput()]);
+    }
+
+    @Benchmark
+    public boolean testSetPrimitive() {
+        int[] cards = candidates[nextInput()];
+        return setSize == 3 ? util.testSet(cards[0], cards[1], cards[2]) : util.testSet(cards, setSize);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(tableLists.get(nextInput()), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(tableLists.get(nextInput()), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public boolean anySet() {
+        int[] cards = tables[nextInput()];
+        return util.anySet(cards, cards.length);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(tables[nextInput()]);
+    }
+}
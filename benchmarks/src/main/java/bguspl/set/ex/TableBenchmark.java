@@ -0,0 +1,134 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks of the set checks the dealer and the table make during a game, on a full table without a user interface.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    private static final int INPUTS = 1 << 8;
+    private static final long SEED = 0x5E7;
+
+    /**
+     * The deck geometry: FeatureSize x FeatureCount.
+     */
+    @Param({"3x4", "3x6", "4x4"})
+    public String features;
+
+    /**
+     * The number of columns of the table (it always has 3 rows).
+     */
+    @Param({"4", "7"})
+    public int columns;
+
+    private Table table;
+    private Dealer dealer;
+
+    /**
+     * Candidate claims of setSize slots.
+     */
+    private Integer[][] claims;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] geometry = features.split("x");
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureSize", geometry[0]);
+        properties.put("FeatureCount", geometry[1]);
+        properties.put("Rows", "3");
+        properties.put("Columns", Integer.toString(columns));
+        properties.put("TableDelaySeconds", "0");
+        Logger logger = Logger.getLogger("benchmark");
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new NoUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        dealer = new Dealer(env, table, new Player[0]);
+
+        Random random = new Random(SEED);
+        random.ints(0, config.deckSize).distinct().limit(config.tableSize).forEach(table::placeCard);
+        claims = new Integer[INPUTS][];
+        for (int i = 0; i < INPUTS; i++)
+            claims[i] = random.ints(0, config.tableSize).distinct().limit(dealer.getSetSize()).boxed().toArray(Integer[]::new);
+    }
+
+    @Benchmark
+    public boolean isValidSet() {
+        return dealer.isValidSet(claims[next++ & (INPUTS - 1)]);
+    }
+
+    @Benchmark
+    public int getSetCount() {
+        return table.getSetCount();
+    }
+
+    /**
+     * Replaces a card on the table, so the cost of keeping the set index is measured.
+     */
+    @Benchmark
+    public int replaceCard() {
+        int slot = claims[next++ & (INPUTS - 1)][0];
+        int card = table.slotToCard[slot];
+        table.removeCard(slot);
+        table.placeCard(card, slot);
+        return table.getSetCount();
+    }
+
+    /**
+     * A user interface that displays nothing.
+     */
+    private static class NoUserInterface implements UserInterface {
+        @Override
+        public void placeCard(int card, int slot) {}
+        @Override
+        public void removeCard(int slot) {}
+        @Override
+        public void placeToken(int player, int slot) {}
+        @Override
+        public void removeTokens() {}
+        @Override
+        public void removeTokens(int slot) {}
+        @Override
+        public void removeToken(int player, int slot) {}
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+        @Override
+        public void setElapsed(long millies) {}
+        @Override
+        public void setFreeze(int player, long millies) {}
+        @Override
+        public void setScore(int player, int score) {}
+        @Override
+        public void announceWinner(int[] players) {}
+        @Override
+        public void dispose() {}
+    }
+}
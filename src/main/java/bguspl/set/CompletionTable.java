@@ -0,0 +1,132 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A precomputed table of the card that completes every pair of cards to a legal set (for 3 valued features).
+ * Small decks keep the table on the heap. Larger decks keep it in a direct buffer outside of the heap, or in a memory
+ * mapped file when a file name is configured, so it is only built once and reused by later runs.
+ * Tables are cached per deck size (the features are always 3 valued) and file, so every game in the process shares the
+ * same table.
+ *
+ * @inv complete(card1, card2) == complete(card2, card1)
+ */
+public final class CompletionTable {
+
+    /**
+     * The largest deck whose table is kept on the heap.
+     */
+    private static final int MAX_HEAP_CARDS = 1 << 10;
+
+    /**
+     * The largest deck whose card ids fit in a table entry.
+     */
+    private static final int MAX_CARDS = Character.MAX_VALUE + 1;
+
+    private static final int MAGIC = 0x53455433;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = Character.BYTES;
+
+    private static final Map<String, CompletionTable> tables = new HashMap<>();
+
+    /**
+     * The entries of the pairs (card1 < card2) at index card2 * (card2 - 1) / 2 + card1.
+     * Exactly one of these is not null.
+     */
+    private final char[] heapEntries;
+    private final ByteBuffer offHeapEntries;
+
+    private CompletionTable(char[] heapEntries, ByteBuffer offHeapEntries) {
+        this.heapEntries = heapEntries;
+        this.offHeapEntries = offHeapEntries;
+    }
+
+    /**
+     * Returns the completion table of the deck, building it on first use.
+     *
+     * @param logger      - the logger to report persistence problems to.
+     * @param packedCards - the packed features of the cards (with featureSize == 3).
+     * @param deckSize    - the number of cards in the deck.
+     * @param file        - the file to persist the table of large decks in (null or empty to keep it in memory).
+     * @param maxBytes    - the maximal size of the table, larger decks get no table.
+     * @return - the completion table or null if the deck is too large to have one.
+     */
+    public static synchronized CompletionTable of(Logger logger, PackedCards packedCards, int deckSize, String file, long maxBytes) {
+        long entries = (long) deckSize * (deckSize - 1) / 2;
+        if (deckSize > MAX_CARDS || entries * ENTRY_BYTES + HEADER_BYTES > Math.min(maxBytes, Integer.MAX_VALUE))
+            return null;
+
+        String key = deckSize + ":" + file;
+        CompletionTable table = tables.get(key);
+        if (table == null) {
+            if (deckSize <= MAX_HEAP_CARDS) {
+                char[] heapEntries = new char[(int) entries];
+                for (int card2 = 1, index = 0; card2 < deckSize; ++card2)
+                    for (int card1 = 0; card1 < card2; ++card1)
+                        heapEntries[index++] = (char) completion(packedCards, card1, card2);
+                table = new CompletionTable(heapEntries, null);
+            } else
+                table = new CompletionTable(null, offHeapEntries(logger, packedCards, deckSize, entries, file));
+            tables.put(key, table);
+        }
+        return table;
+    }
+
+    private static int completion(PackedCards packedCards, int card1, int card2) {
+        return packedCards.card(packedCards.thirdWord(packedCards.word(card1), packedCards.word(card2)));
+    }
+
+    /**
+     * Maps the table file (reusing its contents if it holds a table of the same deck) or allocates a direct buffer.
+     */
+    private static ByteBuffer offHeapEntries(Logger logger, PackedCards packedCards, int deckSize, long entries, String file) {
+        int bytes = (int) (entries * ENTRY_BYTES + HEADER_BYTES);
+        ByteBuffer buffer = null;
+        if (file != null && !file.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                boolean reusable = channel.size() == bytes;
+                if (channel.size() > bytes) channel.truncate(bytes);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                if (reusable && buffer.getInt(0) == MAGIC && buffer.getInt(4) == deckSize && buffer.getLong(8) == entries)
+                    return buffer;
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.severe("cannot map completion table file " + file + ": " + e.getMessage() + " keeping it in memory.");
+                buffer = null;
+            }
+        }
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(bytes);
+
+        for (int card2 = 1, offset = HEADER_BYTES; card2 < deckSize; ++card2)
+            for (int card1 = 0; card1 < card2; ++card1, offset += ENTRY_BYTES)
+                buffer.putChar(offset, (char) completion(packedCards, card1, card2));
+
+        // the header is written last so a partially written file is never reused
+        buffer.putLong(8, entries);
+        buffer.putInt(4, deckSize);
+        buffer.putInt(0, MAGIC);
+        if (buffer instanceof MappedByteBuffer) ((MappedByteBuffer) buffer).force();
+        return buffer;
+    }
+
+    /**
+     * @param card1 - the first card id.
+     * @param card2 - the second card id.
+     * @return - the id of the card that completes the two cards to a legal set.
+     */
+    public int complete(int card1, int card2) {
+        if (card1 == card2) return card1;
+        int low = Math.min(card1, card2), high = Math.max(card1, card2);
+        long index = (long) high * (high - 1) / 2 + low;
+        if (heapEntries != null) return heapEntries[(int) index];
+        return offHeapEntries.getChar((int) (HEADER_BYTES + index * ENTRY_BYTES));
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +22,11 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed of the random streams of the games (drawn at random and logged if it is not set, so a run can be repeated)
+     */
+    public final long randomSeed;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -36,6 +42,37 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The features of every card packed into a long word (null if the features do not fit in a word)
+     */
+    public final PackedCards packedCards;
+
+    /**
+     * The file in which the set completion table of large decks is persisted (empty to keep it in memory only)
+     */
+    public final String completionTableFile;
+
+    /**
+     * The maximal size (in bytes) of the set completion table, larger decks compute completions on the fly
+     */
+    public final long completionTableMaxBytes;
+
+    /**
+     * The card that completes every pair of cards to a set (null if featureSize != 3 or the deck is too large)
+     */
+    public final CompletionTable completionTable;
+
+    /**
+     * The number of cards from which sets are searched in parallel (0 to always search on the calling thread).
+     */
+    public final int parallelSearchThreshold;
+
+    /**
+     * The number of games the simulation plays back to back at full speed, with computer players only,
+     * without a user interface, table delays or freezes (0 for no simulation)
+     */
+    public final int simulationGames;
+
     /**
      * The number of human players in the game.
      */
@@ -86,6 +123,22 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The number of games the game host runs in this process without a user interface (0 for a single game with one)
+     */
+    public final int hostedGames;
+
+    /**
+     * The number of games the game host runs at the same time, the other games wait for their turn
+     */
+    public final int gameHostThreads;
+
+    /**
+     * True iff the players and their AI run on virtual threads (the game does not start if the JVM does not support
+     * them, see Main)
+     */
+    public final boolean virtualThreads;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -192,25 +245,50 @@ public class Config {
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        String seed = properties.getProperty("RandomSeed", "");
+        randomSeed = seed.isEmpty() ? new SplittableRandom().nextLong() : Long.parseLong(seed);
+        logger.info("random seed: " + randomSeed);
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        packedCards = PackedCards.fits(featureCount, featureSize) ? new PackedCards(featureCount, featureSize, deckSize) : null;
+        if (packedCards == null)
+            logger.severe("warning: " + featureCount + " features of size " + featureSize + " do not fit in a word. Searching for sets will be slow.");
+        completionTableFile = properties.getProperty("CompletionTableFile", "");
+        completionTableMaxBytes = (long) (Double.parseDouble(properties.getProperty("CompletionTableMaxMegabytes", "256")) * 1024 * 1024);
+        completionTable = featureSize == 3 && packedCards != null ?
+                CompletionTable.of(logger, packedCards, deckSize, completionTableFile, completionTableMaxBytes) : null;
+        parallelSearchThreshold = Integer.parseInt(properties.getProperty("ParallelSearchThreshold", "4096"));
+
+        // simulation settings (they override the gameplay settings below)
+        simulationGames = Integer.parseInt(properties.getProperty("SimulationGames", "0"));
+        boolean simulation = simulationGames > 0;
 
         // gameplay settings
-        humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
+        // hosted games have no user interface, so nobody could press the keys of a human player
+        boolean headless = simulation || Integer.parseInt(properties.getProperty("HostedGames", "0")) > 0;
+        humanPlayers = headless ? 0 : Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
 
-        hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        hints = !simulation && Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
-        pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
-        penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
-        tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        pointFreezeMillis = simulation ? 0 : (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
+        penaltyFreezeMillis = simulation ? 0 : (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
+        tableDelayMillis = simulation ? 0 : (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
+        // hosting settings
+        hostedGames = Integer.parseInt(properties.getProperty("HostedGames", "0"));
+        int hostThreads = Integer.parseInt(properties.getProperty("GameHostThreads", "0"));
+        gameHostThreads = hostThreads > 0 ? hostThreads : Runtime.getRuntime().availableProcessors();
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        if (virtualThreads && !VirtualThreads.supported())
+            logger.severe("VirtualThreads=True needs Java 21 or later, this is Java " + Runtime.version() + ". The game will not start.");
+
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
         playerNames = new String[players];
@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.SplittableRandom;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +10,21 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * The root of the random streams of the game. It is not thread safe: the table, the dealer and the players split
+     * their own streams from it when they are created, on the thread that creates the game.
+     */
+    public final SplittableRandom random;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new SplittableRandom(config.randomSeed));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, SplittableRandom random) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.random = random;
     }
 }
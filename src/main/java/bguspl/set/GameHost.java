@@ -0,0 +1,184 @@
+package bguspl.set;
+
+import bguspl.set.ex.ClaimStatistics;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs many independent games in one process, without a user interface.
+ * Every game has its own table, dealer, players and AI service. The games share only the configuration, the set
+ * utilities and the logger, which are not changed by a game.
+ * The dealers run on a bounded pool of workers: at most config.gameHostThreads games run at the same time and the
+ * other games wait in the queue of the pool. The tables of all the games show their changes on one shared thread.
+ */
+public class GameHost {
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+
+    /**
+     * The workers that run the dealers of the games.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The thread that shows the changes of the tables of all the games (null if there is no table delay).
+     */
+    private final ScheduledExecutorService animations;
+
+    /**
+     * Counts the claims of all the games (null if they are not counted).
+     */
+    private final ClaimStatistics statistics;
+
+    /**
+     * The root of the random streams of the games, every game gets its own stream split from it in the order the
+     * games are submitted.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The number of games submitted, used to name the threads of every game.
+     */
+    private final AtomicInteger games = new AtomicInteger();
+
+    public GameHost(Logger logger, Config config, Util util) {
+        this(logger, config, util, config.gameHostThreads, null);
+    }
+
+    /**
+     * @param threads    - the number of games that run at the same time.
+     * @param statistics - counts the claims of all the games (null to not count them).
+     */
+    public GameHost(Logger logger, Config config, Util util, int threads, ClaimStatistics statistics) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        this.statistics = statistics;
+        random = new SplittableRandom(config.randomSeed);
+        pool = Executors.newFixedThreadPool(threads, daemonThreads("game host"));
+        animations = config.tableDelayMillis <= 0 ? null
+                : Executors.newSingleThreadScheduledExecutor(daemonThreads("table animation"));
+    }
+
+    /**
+     * Queues a new game.
+     *
+     * @param ui - the user interface of the game.
+     * @return - the scores of the players when the game is over.
+     */
+    public Future<int[]> submit(UserInterface ui) {
+        int game;
+        SplittableRandom gameRandom;
+        synchronized (random) {
+            game = games.incrementAndGet();
+            gameRandom = random.split();
+        }
+        return pool.submit(() -> {
+            Env env = new Env(logger, config, ui, util, gameRandom);
+            Table table = animations == null ? new Table(env) : new Table(env, animations);
+            Player[] players = new Player[config.players];
+            Dealer dealer = new Dealer(env, table, players, daemonThreads("game " + game), statistics);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+            dealer.run();
+
+            int[] scores = new int[players.length];
+            for (int i = 0; i < players.length; i++)
+                scores[i] = players[i].getScore();
+            return scores;
+        });
+    }
+
+    /**
+     * Queues a new game that is not displayed.
+     *
+     * @return - the scores of the players when the game is over.
+     */
+    public Future<int[]> submit() {
+        return submit(new NoUserInterface());
+    }
+
+    /**
+     * Waits until all the games submitted are over and stops the workers.
+     */
+    public void shutdown() throws InterruptedException {
+        pool.shutdown();
+        while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+            logger.info("waiting for " + games.get() + " hosted games to finish");
+        if (animations != null) animations.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + " thread " + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs the number of games set in the configuration and logs the scores of each game.
+     */
+    static void runHostedGames(Logger logger, Config config, Util util) throws Exception {
+        if (config.computerPlayers <= 0) {
+            logger.severe("hosted games need computer players");
+            return;
+        }
+
+        GameHost host = new GameHost(logger, config, util);
+        List<Future<int[]>> results = new ArrayList<>(config.hostedGames);
+        for (int i = 0; i < config.hostedGames; i++)
+            results.add(host.submit());
+        for (int i = 0; i < results.size(); i++)
+            logger.info("game " + (i + 1) + " scores: " + Arrays.toString(results.get(i).get()));
+        host.shutdown();
+    }
+
+    /**
+     * A user interface that displays nothing.
+     */
+    static class NoUserInterface implements UserInterface {
+        @Override
+        public void placeCard(int card, int slot) {}
+        @Override
+        public void removeCard(int slot) {}
+        @Override
+        public void placeToken(int player, int slot) {}
+        @Override
+        public void removeTokens() {}
+        @Override
+        public void removeTokens(int slot) {}
+        @Override
+        public void removeToken(int player, int slot) {}
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+        @Override
+        public void setElapsed(long millies) {}
+        @Override
+        public void setFreeze(int player, long millies) {}
+        @Override
+        public void setScore(int player, int score) {}
+        @Override
+        public void announceWinner(int[] players) {}
+        @Override
+        public void dispose() {}
+    }
+}
@@ -43,8 +43,30 @@ public class Main {
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
+
+        // the players cannot run on the threads the configuration asks for, the reason was logged
+        if (config.virtualThreads && !VirtualThreads.supported()) {
+            System.out.println("Virtual threads need Java 21 or later, see the log.");
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+            return;
+        }
         Util util = new UtilImpl(config);
 
+        // many games without a user interface
+        if (config.simulationGames > 0 || config.hostedGames > 0) {
+            try {
+                if (config.simulationGames > 0) Simulation.run(logger, config, util);
+                else GameHost.runHostedGames(logger, config, util);
+            } catch (Exception e) {
+                logger.severe("hosted games failed: " + e);
+            } finally {
+                ThreadLogger.logStop(logger, Thread.currentThread().getName());
+                for (Handler h : logger.getHandlers()) h.flush();
+            }
+            return;
+        }
+
         Player[] players = new Player[config.players];
         UserInterface ui = null;
         try {
@@ -0,0 +1,217 @@
+package bguspl.set;
+
+/**
+ * Packs the features of a card into a single long word, one feature per 8 bit lane, so that sets can be checked
+ * with a few bitwise operations on all the features at once.
+ * Feature i (as returned by Util::cardToFeatures) is stored in lane featureCount - 1 - i, i.e. the lowest lane holds
+ * the last feature, matching the order of the digits of the card id in base featureSize.
+ */
+public final class PackedCards {
+
+    /**
+     * The number of bits used for each feature.
+     */
+    public static final int LANE_BITS = 8;
+
+    /**
+     * The maximal number of features that fit in a word.
+     */
+    public static final int MAX_FEATURE_COUNT = Long.SIZE / LANE_BITS;
+
+    /**
+     * The maximal number of choices for each feature (feature values must be below the top bit of a lane).
+     */
+    public static final int MAX_FEATURE_SIZE = 1 << (LANE_BITS - 1);
+
+    /**
+     * The largest set size for which completeWord works (the sums of the features must fit in the 7 low bits of a lane).
+     */
+    public static final int MAX_COMPLETION_SET_SIZE = 12;
+
+    /**
+     * The largest deck for which a word is precomputed for every card. Larger decks are decoded from two small
+     * tables (one for the low features and one for the high features of the card id).
+     */
+    private static final int MAX_TABLE_CARDS = 1 << 20;
+
+    private static final long LANE_LOW_BIT = 0x0101010101010101L;
+    private static final long LANE_HIGH_BIT = 0x8080808080808080L;
+    private static final long LANE_LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private final int featureCount;
+    private final int featureSize;
+
+    /**
+     * The high bit of every lane that holds a feature.
+     */
+    private final long highBits;
+
+    /**
+     * The word of every card (null if the deck is larger than MAX_TABLE_CARDS).
+     */
+    private final long[] words;
+
+    /**
+     * The words of the low and high features of the card id, used when words == null.
+     */
+    private final long[] lowWords;
+    private final long[] highWords;
+    private final int lowCards;
+    private final int lowShift;
+
+    /**
+     * @param featureCount - the number of features on the cards (at most MAX_FEATURE_COUNT).
+     * @param featureSize  - the number of choices for each feature (at most MAX_FEATURE_SIZE).
+     * @param deckSize     - the number of cards in the deck (featureSize ^ featureCount).
+     */
+    public PackedCards(int featureCount, int featureSize, int deckSize) {
+        this.featureCount = featureCount;
+        this.featureSize = featureSize;
+        highBits = featureCount == MAX_FEATURE_COUNT ? LANE_HIGH_BIT : LANE_HIGH_BIT & ((1L << (featureCount * LANE_BITS)) - 1);
+
+        if (deckSize <= MAX_TABLE_CARDS) {
+            words = encodeAll(deckSize, featureCount);
+            lowWords = highWords = null;
+            lowCards = lowShift = 0;
+        } else {
+            int lowFeatures = featureCount / 2;
+            lowCards = (int) Math.pow(featureSize, lowFeatures);
+            lowShift = lowFeatures * LANE_BITS;
+            lowWords = encodeAll(lowCards, lowFeatures);
+            highWords = encodeAll(deckSize / lowCards, featureCount - lowFeatures);
+            words = null;
+        }
+    }
+
+    /**
+     * @return - true iff cards with the given features can be packed into a word.
+     */
+    public static boolean fits(int featureCount, int featureSize) {
+        return featureCount > 0 && featureCount <= MAX_FEATURE_COUNT && featureSize > 0 && featureSize <= MAX_FEATURE_SIZE;
+    }
+
+    private long[] encodeAll(int cards, int features) {
+        long[] encoded = new long[cards];
+        for (int card = 0; card < cards; ++card) {
+            long word = 0;
+            for (int i = 0, id = card; i < features; ++i, id /= featureSize)
+                word |= (long) (id % featureSize) << (i * LANE_BITS);
+            encoded[card] = word;
+        }
+        return encoded;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the packed features of the card.
+     */
+    public long word(int card) {
+        if (words != null) return words[card];
+        return highWords[card / lowCards] << lowShift | lowWords[card % lowCards];
+    }
+
+    /**
+     * @param word - the packed features of a card.
+     * @return - the id of the card.
+     */
+    public int card(long word) {
+        int card = 0;
+        for (int i = featureCount - 1; i >= 0; --i)
+            card = card * featureSize + lane(word, i);
+        return card;
+    }
+
+    /**
+     * @param word - the packed features of a card.
+     * @param lane - the lane index (feature featureCount - 1 - lane).
+     * @return - the value of the feature in the lane.
+     */
+    public static int lane(long word, int lane) {
+        return (int) (word >>> (lane * LANE_BITS)) & 0xFF;
+    }
+
+    /**
+     * @return - the high bit of every lane that holds a feature.
+     */
+    public long featureLanes() {
+        return highBits;
+    }
+
+    /**
+     * @return - all the bits of the lanes whose high bit is set in the given mask.
+     */
+    private static long fullLanes(long highBitsMask) {
+        return (highBitsMask >>> (LANE_BITS - 1)) * 0xFF;
+    }
+
+    /**
+     * @return - the high bit of every lane in which the two words differ.
+     */
+    public static long differentLanes(long word1, long word2) {
+        // lane values are below 0x80, so adding 0x7F to a lane sets its high bit iff it is not 0 without carrying
+        return ((word1 ^ word2) + LANE_LOW_7_BITS) & LANE_HIGH_BIT;
+    }
+
+    /**
+     * Checks if three cards form a legal set, i.e. every feature is either the same in all of them or different in all
+     * of them.
+     */
+    public boolean testSet(long word1, long word2, long word3) {
+        long different12 = differentLanes(word1, word2);
+        long different23 = differentLanes(word2, word3);
+        long different13 = differentLanes(word1, word3);
+        long legal = ~(different12 | different23) | (different12 & different23 & different13);
+        return (legal & highBits) == highBits;
+    }
+
+    /**
+     * Checks if the first length cards of the array form a legal set.
+     */
+    public boolean testSet(int[] cards, int length) {
+        if (length < 2) return false;
+        long same = highBits, different = highBits;
+        for (int i = 0; i < length; ++i) {
+            long word = word(cards[i]);
+            for (int j = i + 1; j < length; ++j) {
+                long differentLanes = differentLanes(word, word(cards[j]));
+                if (i == 0) same &= ~differentLanes;
+                different &= differentLanes;
+            }
+            if ((same | different) != highBits) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the word of the card that completes the given two cards to a legal set when featureSize == 3
+     * (in every feature the three values sum to 0 mod 3).
+     */
+    public long thirdWord(long word1, long word2) {
+        long sum = word1 + word2;
+        // sum mod 3: subtract 3 from the lanes that are 3 or more
+        long atLeast3 = ((sum + (LANE_LOW_BIT * (0x80 - 3))) & LANE_HIGH_BIT) >>> (LANE_BITS - 1);
+        sum -= atLeast3 * 3;
+        // (3 - sum) mod 3
+        long nonZero = ((sum + LANE_LOW_7_BITS) & LANE_HIGH_BIT) >>> (LANE_BITS - 1);
+        return nonZero * 3 - sum;
+    }
+
+    /**
+     * Computes the word of the card that completes setSize - 1 cards to a legal set of setSize cards (setSize being
+     * featureSize). In the features that are the same in all the cards the last card has the same value, and in the
+     * others (which must be different in all the cards) it has the only value missing, which is the sum of all the
+     * values minus the sum of the given cards.
+     *
+     * @param firstWord - the word of one of the cards.
+     * @param sameLanes - the high bit of every lane that is the same in all the cards.
+     * @param sum       - the sum of the words of the cards (every lane must be below 0x80).
+     * @param setSize   - the number of cards in a set.
+     * @return - the word of the last card.
+     */
+    public long completeWord(long firstWord, long sameLanes, long sum, int setSize) {
+        long allValues = LANE_LOW_BIT * (setSize * (setSize - 1) / 2);
+        // a lane-wise subtraction: the high bit of every lane is set beforehand so no lane borrows from the next one
+        long missing = ((allValues | LANE_HIGH_BIT) - sum) & LANE_LOW_7_BITS;
+        return (firstWord & fullLanes(sameLanes)) | (missing & fullLanes(highBits & ~sameLanes));
+    }
+}
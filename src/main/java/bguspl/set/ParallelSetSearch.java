@@ -0,0 +1,116 @@
+package bguspl.set;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a set search across a ForkJoinPool by the index of the smallest card of the sets.
+ * The range of first cards is split in halves until it is small enough, and the pool balances the (uneven) work of
+ * the ranges by stealing. Once count sets are found, the running ranges stop and the ones that did not start yet are
+ * skipped.
+ */
+final class ParallelSetSearch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of ranges per pool thread, so that the threads that get the cheap ranges can steal from the others.
+     */
+    private static final int RANGES_PER_THREAD = 16;
+
+    private final SetSearch search;
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final Results results;
+
+    /**
+     * The sets found by all the ranges of a search.
+     */
+    private static final class Results {
+        private final Queue<int[]> sets;
+        private final AtomicInteger found = new AtomicInteger();
+        private final int count;
+
+        /**
+         * @param count    - the maximal number of sets to find.
+         * @param keepSets - whether to keep the sets found or only count them.
+         */
+        private Results(int count, boolean keepSets) {
+            this.count = count;
+            sets = keepSets ? new ConcurrentLinkedQueue<>() : null;
+        }
+
+        private boolean isDone() {
+            return found.get() >= count;
+        }
+
+        /**
+         * @return - false iff count sets were found.
+         */
+        private boolean add(int[] set) {
+            int index = found.getAndIncrement();
+            if (index < count) sets.add(set.clone());
+            return index + 1 < count;
+        }
+    }
+
+    private ParallelSetSearch(SetSearch search, int from, int to, int grain, Results results) {
+        this.search = search;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.results = results;
+    }
+
+    /**
+     * Finds up to count sets in the given pool.
+     *
+     * @param pool   - the pool to search in.
+     * @param search - the search to split, it is only used to create a search for every range.
+     * @param count  - the maximal number of sets to find.
+     * @return - the sets found, in no particular order.
+     */
+    static Queue<int[]> search(ForkJoinPool pool, SetSearch search, int count) {
+        return invoke(pool, search, new Results(count, true)).sets;
+    }
+
+    /**
+     * Counts the sets in the given pool.
+     *
+     * @param pool   - the pool to search in.
+     * @param search - the search to split, it is only used to create a search for every range.
+     * @return - the number of sets.
+     */
+    static int count(ForkJoinPool pool, SetSearch search) {
+        return invoke(pool, search, new Results(Integer.MAX_VALUE, false)).found.get();
+    }
+
+    private static Results invoke(ForkJoinPool pool, SetSearch search, Results results) {
+        int grain = Math.max(1, search.cardCount() / (pool.getParallelism() * RANGES_PER_THREAD));
+        pool.invoke(new ParallelSetSearch(search, 0, search.cardCount(), grain, results));
+        return results;
+    }
+
+    @Override
+    protected void compute() {
+        if (results.isDone()) return;
+        if (to - from <= grain) {
+            if (results.sets != null) {
+                search.copy().search(from, to, results::add);
+                return;
+            }
+            // counting only needs one update of the shared counter per range
+            int[] found = {0};
+            search.copy().search(from, to, set -> ++found[0] > 0);
+            results.found.addAndGet(found[0]);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParallelSetSearch(search, from, middle, grain, results),
+                new ParallelSetSearch(search, middle, to, grain, results));
+    }
+}
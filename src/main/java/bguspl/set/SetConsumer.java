@@ -0,0 +1,16 @@
+package bguspl.set;
+
+/**
+ * Receives the legal sets found by Util::forEachSet.
+ */
+@FunctionalInterface
+public interface SetConsumer {
+
+    /**
+     * Called for every set found. The array is reused for the next set, so it must be copied to be kept.
+     *
+     * @param set - the card ids of a legal set, in ascending order.
+     * @return - true to continue the search or false to stop it.
+     */
+    boolean accept(int[] set);
+}
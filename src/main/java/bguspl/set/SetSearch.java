@@ -0,0 +1,175 @@
+package bguspl.set;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Searches a collection of cards for sets of any size.
+ * The cards are sorted and the sets are built in ascending order, one card at a time. A partial set is dropped as soon
+ * as one of its features is neither the same in all of its cards nor different in all of them. Once all but one card
+ * are chosen, the last card is computed from the sum of the features (in every feature that is different in all the
+ * cards, the missing value is featureSize * (featureSize - 1) / 2 minus the sum of the others) and looked up in a
+ * card-presence bitmap, so a set of k cards is found in O(n^(k-1)) instead of O(n^k).
+ * Sets of 3 cards with a pair completion (e.g. a completion table) are found by looking up the completion of every pair.
+ * <p>
+ * An instance holds the state of a single search, so it must only be used by one thread at a time.
+ */
+final class SetSearch {
+
+    private final int setSize;
+    private final PackedCards packedCards;
+    private final IntBinaryOperator pairCompletion;
+
+    /**
+     * The cards to search, sorted in ascending order.
+     */
+    private final int[] cards;
+
+    /**
+     * A bitmap of the cards to search.
+     */
+    private final long[] present;
+
+    /**
+     * The state of the partial set, by the index of its cards: the chosen indices in cards, the words of the chosen
+     * cards, the lanes that are the same in all of the cards, the lanes that are different in all of them and the
+     * sum of the words.
+     */
+    private final int[] chosen;
+    private final long[] words;
+    private final long[] sameLanes;
+    private final long[] differentLanes;
+    private final long[] sums;
+
+    /**
+     * The set passed to the sink, reused for every set found.
+     */
+    private final int[] set;
+
+    /**
+     * @param setSize        - the number of cards in a set.
+     * @param packedCards    - the packed features of the cards (may be null if pairCompletion is used).
+     * @param pairCompletion - the card completing a pair to a set (null to search with the packed features).
+     * @param cards          - the cards to search, sorted in ascending order.
+     * @param present        - a bitmap of the cards to search.
+     */
+    SetSearch(int setSize, PackedCards packedCards, IntBinaryOperator pairCompletion, int[] cards, long[] present) {
+        this.setSize = setSize;
+        this.packedCards = packedCards;
+        this.pairCompletion = pairCompletion;
+        this.cards = cards;
+        this.present = present;
+        chosen = new int[setSize];
+        words = new long[setSize];
+        sameLanes = new long[setSize];
+        differentLanes = new long[setSize];
+        sums = new long[setSize];
+        set = new int[setSize];
+    }
+
+    /**
+     * @return - a bitmap of the given cards.
+     */
+    static long[] presence(int deckSize, int[] cards, int length) {
+        long[] present = new long[(deckSize + 63) >>> 6];
+        for (int i = 0; i < length; ++i)
+            present[cards[i] >>> 6] |= 1L << cards[i];
+        return present;
+    }
+
+    private boolean isPresent(int card) {
+        return card >= 0 && (present[card >>> 6] & (1L << card)) != 0;
+    }
+
+    /**
+     * @return - the number of cards to search.
+     */
+    int cardCount() {
+        return cards.length;
+    }
+
+    /**
+     * Finds sets whose smallest card is one of cards[from] ... cards[to - 1] and passes them to the sink until it
+     * returns false. The same array is passed for every set, so the sink must copy it to keep it.
+     *
+     * @param sink - receives every set found and returns false to stop the search.
+     * @return - false iff the search was stopped by the sink.
+     */
+    boolean search(int from, int to, SetConsumer sink) {
+        if (setSize < 2) return true;
+        if (pairCompletion != null && setSize == 3) return searchPairs(from, to, sink);
+        return extend(0, from, to, sink);
+    }
+
+    private boolean searchPairs(int from, int to, SetConsumer sink) {
+        // every pair of cards has exactly one card that completes it to a legal set. the cards are sorted, so
+        // requiring the third card to be greater than the second one reports every set exactly once.
+        for (int i = from; i < Math.min(to, cards.length - 2); ++i)
+            for (int j = i + 1; j < cards.length - 1; ++j) {
+                int third = pairCompletion.applyAsInt(cards[i], cards[j]);
+                if (third > cards[j] && isPresent(third)) {
+                    set[0] = cards[i];
+                    set[1] = cards[j];
+                    set[2] = third;
+                    if (!sink.accept(set)) return false;
+                }
+            }
+        return true;
+    }
+
+    /**
+     * Chooses the card at the given depth of the partial set.
+     */
+    private boolean extend(int depth, int from, int to, SetConsumer sink) {
+        boolean completeLast = setSize >= 3 && setSize <= PackedCards.MAX_COMPLETION_SET_SIZE;
+        int cardsLeft = setSize - depth;
+        for (int i = from; i < Math.min(to, cards.length - cardsLeft + 1); ++i) {
+            long word = packedCards.word(cards[i]);
+            if (depth == 0) {
+                sameLanes[0] = differentLanes[0] = packedCards.featureLanes();
+                sums[0] = word;
+            } else {
+                long different = PackedCards.differentLanes(words[0], word);
+                long same = sameLanes[depth - 1] & ~different;
+                for (int j = 1; j < depth; ++j)
+                    different &= PackedCards.differentLanes(words[j], word);
+                different &= differentLanes[depth - 1];
+
+                // prune: some feature is neither the same nor different in all the cards so far
+                if ((same | different) != packedCards.featureLanes()) continue;
+
+                sameLanes[depth] = same;
+                differentLanes[depth] = different;
+                sums[depth] = sums[depth - 1] + word;
+            }
+            chosen[depth] = i;
+            words[depth] = word;
+
+            if (completeLast && cardsLeft == 2) {
+                int last = packedCards.card(packedCards.completeWord(words[0], sameLanes[depth], sums[depth], setSize));
+                if (last > cards[i] && isPresent(last) && !add(sink, depth + 1, last)) return false;
+            } else if (cardsLeft == 1) {
+                if (!add(sink, depth, cards[i])) return false;
+            } else if (!extend(depth + 1, i + 1, cards.length, sink)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Passes the chosen cards and the last card to the sink as a set.
+     *
+     * @return - false iff the sink stopped the search.
+     */
+    private boolean add(SetConsumer sink, int chosenCount, int last) {
+        for (int i = 0; i < chosenCount; ++i)
+            set[i] = cards[chosen[i]];
+        set[setSize - 1] = last;
+        return sink.accept(set);
+    }
+
+    /**
+     * @return - a new search of the same cards, for use by another thread.
+     */
+    SetSearch copy() {
+        return new SetSearch(setSize, packedCards, pairCompletion, cards, present);
+    }
+}
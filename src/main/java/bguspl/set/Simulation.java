@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import bguspl.set.ex.ClaimStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Plays games back to back at full speed, with computer players only and no user interface, table delays or freezes
+ * (see Config.simulationGames), and prints the throughput of the games, the latency of the claims and how many of them
+ * were rejected. Used to load test the dealer and the players.
+ */
+public class Simulation {
+
+    private Simulation() {}
+
+    /**
+     * Plays the number of games set in the configuration and prints the report.
+     */
+    static void run(Logger logger, Config config, Util util) throws Exception {
+        if (config.computerPlayers <= 0) {
+            logger.severe("a simulation needs computer players");
+            return;
+        }
+
+        ClaimStatistics statistics = new ClaimStatistics();
+        GameHost host = new GameHost(logger, config, util, 1, statistics);
+        long start = System.nanoTime();
+        List<Future<int[]>> games = new ArrayList<>(config.simulationGames);
+        for (int i = 0; i < config.simulationGames; i++)
+            games.add(host.submit());
+        for (Future<int[]> game : games)
+            game.get();
+        host.shutdown();
+
+        System.out.print(statistics.report(System.nanoTime() - start));
+    }
+}
@@ -1,6 +1,8 @@
 package bguspl.set;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +33,59 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks if the first length cards of an array form a legal set.
+     *
+     * @param cards  - the array of cards.
+     * @param length - the number of cards to check.
+     * @return - true iff the cards form a legal set.
+     */
+    default boolean testSet(int[] cards, int length) {
+        return testSet(Arrays.copyOf(cards, length));
+    }
+
+    /**
+     * Checks if three cards form a legal set (an allocation free overload of testSet).
+     *
+     * @param card1 - the first card id.
+     * @param card2 - the second card id.
+     * @param card3 - the third card id.
+     * @return - true iff the cards form a legal set.
+     */
+    default boolean testSet(int card1, int card2, int card3) {
+        return testSet(new int[]{card1, card2, card3});
+    }
+
+    /**
+     * Finds the card that completes two cards to a legal set (every pair of cards has exactly one such card when
+     * the features are 3 valued).
+     *
+     * @param card1 - the first card id.
+     * @param card2 - the second card id.
+     * @return - the id of the completing card, or -1 if sets are not made of 3 cards.
+     */
+    default int completeSet(int card1, int card2) {
+        return -1;
+    }
+
+    /**
+     * Finds the card that completes setSize() - 1 cards to a legal set.
+     *
+     * @param cards  - an array of card ids.
+     * @param length - the number of cards in the array to complete.
+     * @return - the id of the completing card, or -1 if the cards cannot be completed to a set (or length != setSize() - 1).
+     */
+    default int completeSet(int[] cards, int length) {
+        return length == 2 ? completeSet(cards[0], cards[1]) : -1;
+    }
+
+    /**
+     * @return - the number of cards in a set (featureSize, every feature is either the same or different in all of them).
+     */
+    default int setSize() {
+        return 3;
+    }
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +95,86 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets in the first length cards of an array (see findSets).
+     *
+     * @param cards  - an array of card ids, it is not modified.
+     * @param length - the number of cards in the array.
+     * @param count  - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    default List<int[]> findSets(int[] cards, int length, int count) {
+        return findSets(boxed(cards, length), count);
+    }
+
+    /**
+     * Passes every legal set in the given collection of cards to the consumer, until it asks to stop.
+     * Unlike findSets, no list is built and (in implementations that support it) the same array is passed for every
+     * set, so the consumer must copy a set to keep it.
+     *
+     * @param deck     - a collection of cards (may not include null objects).
+     * @param consumer - the consumer of the sets.
+     * @return - false iff the consumer stopped the search.
+     */
+    default boolean forEachSet(List<Integer> deck, SetConsumer consumer) {
+        for (int[] set : findSets(deck, Integer.MAX_VALUE))
+            if (!consumer.accept(set)) return false;
+        return true;
+    }
+
+    /**
+     * Passes every legal set in the first length cards of an array to the consumer (see forEachSet).
+     *
+     * @param cards    - an array of card ids, it is not modified.
+     * @param length   - the number of cards in the array.
+     * @param consumer - the consumer of the sets.
+     * @return - false iff the consumer stopped the search.
+     */
+    default boolean forEachSet(int[] cards, int length, SetConsumer consumer) {
+        return forEachSet(boxed(cards, length), consumer);
+    }
+
+    /**
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - true iff there is a legal set in the cards.
+     */
+    default boolean anySet(List<Integer> deck) {
+        return !findSets(deck, 1).isEmpty();
+    }
+
+    /**
+     * @param cards  - an array of card ids, it is not modified.
+     * @param length - the number of cards in the array.
+     * @return - true iff there is a legal set in the first length cards.
+     */
+    default boolean anySet(int[] cards, int length) {
+        return anySet(boxed(cards, length));
+    }
+
+    /**
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - the number of legal sets in the cards.
+     */
+    default int countSets(List<Integer> deck) {
+        return findSets(deck, Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * @param cards  - an array of card ids, it is not modified.
+     * @param length - the number of cards in the array.
+     * @return - the number of legal sets in the first length cards.
+     */
+    default int countSets(int[] cards, int length) {
+        return countSets(boxed(cards, length));
+    }
+
+    /**
+     * Boxes the first length cards of an array, for the implementations that only support lists.
+     */
+    static List<Integer> boxed(int[] cards, int length) {
+        return Arrays.stream(cards, 0, length).boxed().collect(Collectors.toList());
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -3,7 +3,9 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntBinaryOperator;
 import java.util.stream.IntStream;
 
 /**
@@ -13,11 +15,29 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The packed features of the cards (null if the features do not fit in a word).
+     */
+    private final PackedCards packedCards;
+
+    /**
+     * The completing card of every pair of cards (null if not precomputed).
+     */
+    private final CompletionTable completionTable;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.packedCards = config.packedCards;
+        this.completionTable = config.completionTable;
     }
 
     private void cardToFeatures(int card, int[] features) {
+        if (packedCards != null) {
+            long word = packedCards.word(card);
+            for (int i = 0; i < config.featureCount; ++i)
+                features[i] = PackedCards.lane(word, config.featureCount - 1 - i);
+            return;
+        }
         for (int i = config.featureCount - 1; i >= 0; --i) {
             features[i] = card % config.featureSize;
             card /= config.featureSize;
@@ -40,7 +60,14 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        return testSet(cards, cards.length);
+    }
+
+    @Override
+    public boolean testSet(int[] cards, int length) {
+        if (packedCards != null) return packedCards.testSet(cards, length);
+
+        int[][] features = cardsToFeatures(Arrays.copyOf(cards, length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
@@ -64,18 +91,193 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    @Override
+    public boolean testSet(int card1, int card2, int card3) {
+        if (completionTable != null) return completionTable.complete(card1, card2) == card3;
+        if (packedCards == null) return testSet(new int[]{card1, card2, card3});
+        return packedCards.testSet(packedCards.word(card1), packedCards.word(card2), packedCards.word(card3));
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        int[] cards = toArray(deck);
+        return findSets(cards, cards.length, count);
+    }
+
+    @Override
+    public List<int[]> findSets(int[] cards, int length, int count) {
+        cards = Arrays.copyOf(cards, length);
+        if (packedCards == null && setSize() != 3) return findSetsByCombinations(cards, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        if (count <= 0) return sets;
+        SetSearch search = newSearch(cards);
+
+        // large collections are searched by all the cores, small ones are not worth the hand-off
+        if (isParallel(cards)) {
+            sets.addAll(ParallelSetSearch.search(ForkJoinPool.commonPool(), search, count));
+            return sets;
+        }
+        search.search(0, cards.length, set -> {
+            sets.add(set.clone());
+            return sets.size() < count;
+        });
+        return sets;
+    }
+
+    @Override
+    public boolean forEachSet(List<Integer> deck, SetConsumer consumer) {
+        int[] cards = toArray(deck);
+        return forEachSet(cards, cards.length, consumer);
+    }
+
+    @Override
+    public boolean forEachSet(int[] cards, int length, SetConsumer consumer) {
+        cards = Arrays.copyOf(cards, length);
+        if (packedCards == null && setSize() != 3) {
+            for (int[] set : findSetsByCombinations(cards, Integer.MAX_VALUE))
+                if (!consumer.accept(set)) return false;
+            return true;
+        }
+        return newSearch(cards).search(0, cards.length, consumer);
+    }
+
+    @Override
+    public boolean anySet(List<Integer> deck) {
+        return !forEachSet(deck, set -> false);
+    }
+
+    @Override
+    public boolean anySet(int[] cards, int length) {
+        return !forEachSet(cards, length, set -> false);
+    }
+
+    @Override
+    public int countSets(List<Integer> deck) {
+        int[] cards = toArray(deck);
+        return countSets(cards, cards.length);
+    }
+
+    @Override
+    public int countSets(int[] cards, int length) {
+        cards = Arrays.copyOf(cards, length);
+        if (packedCards == null && setSize() != 3) return findSetsByCombinations(cards, Integer.MAX_VALUE).size();
+
+        SetSearch search = newSearch(cards);
+        if (isParallel(cards)) return ParallelSetSearch.count(ForkJoinPool.commonPool(), search);
+        int[] count = {0};
+        search.search(0, cards.length, set -> ++count[0] > 0);
+        return count[0];
+    }
+
+    /**
+     * Unboxes the cards with a single pass over the list (so linked lists are not indexed).
+     */
+    private static int[] toArray(List<Integer> deck) {
+        int[] cards = new int[deck.size()];
+        int i = 0;
+        for (int card : deck) cards[i++] = card;
+        return cards;
+    }
+
+    /**
+     * Creates a search of the given cards (sorting them).
+     */
+    private SetSearch newSearch(int[] cards) {
+        Arrays.sort(cards);
+        long[] present = SetSearch.presence(config.deckSize, cards, cards.length);
+        IntBinaryOperator pairCompletion = completionTable != null || packedCards == null ? this::completeSet : null;
+        return new SetSearch(setSize(), packedCards, pairCompletion, cards, present);
+    }
+
+    private boolean isParallel(int[] cards) {
+        return config.parallelSearchThreshold > 0 && cards.length >= config.parallelSearchThreshold;
+    }
+
+    @Override
+    public int setSize() {
+        return config.featureSize;
+    }
+
+    @Override
+    public int completeSet(int card1, int card2) {
+        if (config.featureSize != 3) return -1;
+        if (completionTable != null) return completionTable.complete(card1, card2);
+        if (packedCards != null) return packedCards.card(packedCards.thirdWord(packedCards.word(card1), packedCards.word(card2)));
+        return thirdCard(card1, card2);
+    }
+
+    @Override
+    public int completeSet(int[] cards, int length) {
+        int setSize = setSize();
+        if (length != setSize - 1 || setSize < 3) return -1;
+        if (setSize == 3) return completeSet(cards[0], cards[1]);
+        if (packedCards == null || setSize > PackedCards.MAX_COMPLETION_SET_SIZE) return completeSetByFeatures(cards, length);
+
+        long first = packedCards.word(cards[0]), sum = first;
+        long same = packedCards.featureLanes(), different = packedCards.featureLanes();
+        for (int i = 1; i < length; ++i) {
+            long word = packedCards.word(cards[i]);
+            same &= ~PackedCards.differentLanes(first, word);
+            for (int j = 0; j < i; ++j)
+                different &= PackedCards.differentLanes(packedCards.word(cards[j]), word);
+            sum += word;
+        }
+        if ((same | different) != packedCards.featureLanes()) return -1;
+        return packedCards.card(packedCards.completeWord(first, same, sum, setSize));
+    }
+
+    /**
+     * Computes the card that completes the given cards to a legal set one feature at a time.
+     */
+    private int completeSetByFeatures(int[] cards, int length) {
+        int size = config.featureSize;
+        int last = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= size) {
+            int first = cards[0] / weight % size, sum = 0;
+            boolean sameSame = true, butDifferent = true;
+            for (int j = 0; j < length; ++j) {
+                int value = cards[j] / weight % size;
+                sameSame &= value == first;
+                for (int k = 0; k < j; ++k)
+                    butDifferent &= value != cards[k] / weight % size;
+                sum += value;
+            }
+            if (sameSame) last += first * weight;
+            else if (butDifferent) last += (size * (size - 1) / 2 - sum) * weight;
+            else return -1;
+        }
+        return last;
+    }
+
+    /**
+     * Computes the unique card that completes the two given cards to a legal set (for featureSize == 3).
+     * In every feature the three values must sum to 0 (mod 3).
+     */
+    private int thirdCard(int card1, int card2) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= 3) {
+            third += (6 - card1 % 3 - card2 % 3) % 3 * weight;
+            card1 /= 3;
+            card2 /= 3;
+        }
+        return third;
+    }
+
+    /**
+     * Finds sets by enumerating every r-combination of the cards (r being featureSize).
+     */
+    private List<int[]> findSetsByCombinations(int[] deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int n = deck.length;
         int r = config.featureSize;
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
+        while (combination[r - 1] < n) {
+            int[] cards = Arrays.stream(combination).map(i -> deck[i]).sorted().toArray();
             if (testSet(cards)) {
                 sets.add(cards);
                 if (sets.size() >= count) return sets;
@@ -0,0 +1,46 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads (see Config.virtualThreads).
+ * Virtual threads were added in Java 21 and the game is built for an older release, so they are created through
+ * reflection. On an older JVM they are not supported and a configuration that asks for them is rejected.
+ */
+public final class VirtualThreads {
+
+    /**
+     * Creates the virtual threads (null if the JVM does not support them). It may be used by many threads at once.
+     */
+    private static final ThreadFactory factory = createFactory();
+
+    private VirtualThreads() {}
+
+    private static ThreadFactory createFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true iff the JVM supports virtual threads.
+     */
+    public static boolean supported() {
+        return factory != null;
+    }
+
+    /**
+     * @return a factory of virtual threads.
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    public static ThreadFactory factory() {
+        if (factory == null)
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later, this is Java " + Runtime.version());
+        return factory;
+    }
+}
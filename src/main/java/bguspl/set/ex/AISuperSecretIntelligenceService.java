@@ -1,6 +1,7 @@
 package bguspl.set.ex;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 import bguspl.set.Env;
 
@@ -17,8 +18,12 @@ public class AISuperSecretIntelligenceService{
 
     private static final IntelligenceStrength intelligenceStrength = IntelligenceStrength.illuminati;
 
+    /**
+     * The intel about every triplet of slots (null if sets are not made of 3 cards)
+     */
     private volatile int[][][] sets;
     private int cardsCount;
+    private final int setSize;
 
     private int isSetTries;
     private int isPotentialSetTries;
@@ -27,16 +32,21 @@ public class AISuperSecretIntelligenceService{
 
     public final int AI_WAIT_BETWEEN_KEY_PRESSES;
 
-    public boolean continueExecution;
+    /**
+     * Cleared by the dealer thread when it pauses the players, the AI threads stop whatever they are computing
+     */
+    public volatile boolean continueExecution;
 
     private Table table;
     private Dealer dealer;
 
     public AISuperSecretIntelligenceService(Env env,Dealer dealer,Table table){
         cardsCount = env.config.tableSize;
-        sets = new int[cardsCount][cardsCount][cardsCount];
+        setSize = env.util.setSize();
+        sets = setSize == 3 ? new int[cardsCount][cardsCount][cardsCount] : null;
 
-        AI_WAIT_BETWEEN_KEY_PRESSES = env.config.penaltyFreezeMillis == 0 ? 25 : 250;
+        // a simulation runs at full speed. the wait is drawn from [1/2, 3/2) of this and a wait of 0 would never end
+        AI_WAIT_BETWEEN_KEY_PRESSES = env.config.simulationGames > 0 ? 2 : env.config.penaltyFreezeMillis == 0 ? 25 : 250;
 
         switch(intelligenceStrength){
             case disabled:{
@@ -80,16 +90,22 @@ public class AISuperSecretIntelligenceService{
         continueExecution = intelligenceStrength != IntelligenceStrength.disabled ;
     }
 
-    private boolean isSet(int i, int j, int k){
-        return sets[i][j][k] == 1;
+    /**
+     * without intel about the slots (sets that are not made of 3 cards) the slots are checked with the dealer
+     */
+    private boolean isSet(Integer[] cards){
+        if(sets == null) return dealer.isValidSet(cards);
+        return sets[cards[0]][cards[1]][cards[2]] == 1;
     }
 
-    private boolean isPotentialSet(int i, int j, int k){
-        return sets[i][j][k] == 0;
+    private boolean isPotentialSet(Integer[] cards){
+        if(sets == null) return true;
+        return sets[cards[0]][cards[1]][cards[2]] == 0;
     }
 
     public void sendIntel(Integer[] cards,boolean truthValue){
 
+        if(sets == null) return;
         int value = truthValue ? 1:-1;
 
         for(int i = 0; continueExecution && i < 3 ;i ++){
@@ -103,6 +119,8 @@ public class AISuperSecretIntelligenceService{
         //reportSetClaimed costs exactly 3630 operations.....
         //small price to pay for high quality intelligence...
 
+        if(sets == null) return;
+
         for(Integer card : cards){
             for(int i = 0; i < cardsCount ;i ++){
                 if(i == card) continue;
@@ -122,57 +140,76 @@ public class AISuperSecretIntelligenceService{
         }
     }
 
-    public void gatherIntel() {
+    /**
+     * @param random - the random stream of the calling AI thread.
+     */
+    public void gatherIntel(SplittableRandom random) {
         Integer[] keys;
-        keys = drawPotentialSet();
+        keys = drawPotentialSet(random);
+        if(keys == null) return;
         sendIntel(keys, dealer.isValidSet(keys));
     }
 
-    private Integer[] drawPotentialSet(){
+    private Integer[] drawPotentialSet(SplittableRandom random){
         Integer[] cards;
         int tries = 0;
         do{
-            cards = generateCards();
+            cards = generateCards(random);
+            if(cards == null) return null;
             tries++;
-        }while(continueExecution && isPotentialSet(cards[0],cards[1],cards[2]) == false & tries <= isPotentialSetTries);
+        }while(continueExecution && isPotentialSet(cards) == false & tries <= isPotentialSetTries);
         return cards;
     }
 
-    public Integer[] getIntel(){
+    /**
+     * @param random - the random stream of the calling AI thread.
+     * @return the slots to press, or null if there are too few cards on the table or the players are being paused.
+     */
+    public Integer[] getIntel(SplittableRandom random){
         Integer[] cards;
         int tries = 0;
         
         do{
-            cards = generateCards();
+            cards = generateCards(random);
+            if(cards == null) return null;
             tries++;
-        }while((continueExecution && isSet(cards[0],cards[1],cards[2]) == false & tries <= isSetTries));
+        }while((continueExecution && isSet(cards) == false & tries <= isSetTries));
         
-        if(isSet(cards[0],cards[1],cards[2]) == false){
+        if(isSet(cards) == false){
             do{
-                cards = generateCards();
+                cards = generateCards(random);
+                if(cards == null) return null;
                 tries++;
-            }while(continueExecution && isPotentialSet(cards[0],cards[1],cards[2]) == false & tries <= isPotentialSetTries);
+            }while(continueExecution && isPotentialSet(cards) == false & tries <= isPotentialSetTries);
         }
 
         return cards;
     }
 
-    private Integer[] generateCards(){
-        Random rand = new Random();
-        int i,j,k;
-        do{
-            i = rand.nextInt(cardsCount);
-        }while(table.isSlotEmpty(i));
+    /**
+     * Draws setSize different slots that hold cards.
+     * @return the slots, or null if there are too few cards on the table or the players are being paused.
+     */
+    private Integer[] generateCards(SplittableRandom random){
 
-        do{
-            j = rand.nextInt(cardsCount);
-        }while(table.isSlotEmpty(j) || i == j);
-
-        do{
-            k = rand.nextInt(cardsCount);
-        }while(table.isSlotEmpty(k) || k == i || k == j);
+        // at the end of the deck the table may hold fewer cards than a set, the draw would never end
+        int cardsOnTable = 0;
+        for(int slot = 0; slot < cardsCount; slot++){
+            if(table.isSlotEmpty(slot) == false) cardsOnTable++;
+        }
+        if(cardsOnTable < setSize) return null;
 
-        return new Integer[]{i,j,k};
+        Integer[] cards = new Integer[setSize];
+        for(int i = 0; i < setSize; i++){
+            int slot;
+            do{
+                // the dealer may remove the cards meanwhile, it stops the draw when it pauses the players
+                if(continueExecution == false) return null;
+                slot = random.nextInt(cardsCount);
+            }while(table.isSlotEmpty(slot) || Arrays.asList(cards).subList(0, i).contains(slot));
+            cards[i] = slot;
+        }
+        return cards;
     }
 
 
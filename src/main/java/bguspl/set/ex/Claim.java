@@ -1,14 +1,60 @@
 package bguspl.set.ex;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 public class Claim{
 
+    /**
+     * The rulings on a claim
+     */
+    public enum Result {
+        /** the cards form a set, the claimer gets a point */
+        valid,
+        /** the cards do not form a set, the claimer is penalized */
+        notASet,
+        /** the cards were dealt again or one of the slots changed since the claimer placed its token on it */
+        slotChanged,
+        /** an earlier valid claim of the same batch took one of the slots */
+        slotTaken,
+        /** the game was paused before the dealer ruled on the claim */
+        withdrawn,
+        /** the dealer's claim queue was full, the claim was not turned in */
+        queueFull
+    }
+
+    /**
+     * The id of the claim, unique in its game (-1 if it was not made through a dealer). It tells the claims apart in
+     * the logs, the claimer applies every result once by taking it (see Player.takeClaimResult())
+     */
+    public final long id;
     public final Integer[] cards;
     public final Player claimer;
     public final int claimVersion;
+    public final int[] slotVersions;
+
+    /**
+     * The time the claim was made (System.nanoTime())
+     */
+    public final long claimNanos;
     public boolean validSet;
 
+    /**
+     * True if one of the claimed slots changed before the dealer ruled on the claim,
+     * such a claim is neither rewarded nor penalized.
+     */
+    public boolean stale;
+
+    /**
+     * The ruling on the claim until it is published (dealer thread only)
+     */
+    private Result ruling;
+
+    /**
+     * Completed with the ruling when the dealer publishes it
+     */
+    private final CompletableFuture<Result> result;
+
 
     /**
      * @param cards - the cards in the claim
@@ -16,13 +62,65 @@ public class Claim{
      * @param claimVersion - the version of the claim
      */
     public Claim(Integer[] cards, Player claimer,int claimVersion){
+        this(cards, claimer, claimVersion, null);
+    }
+
+    /**
+     * @param cards - the cards in the claim
+     * @param claimer - the player who made the claim
+     * @param claimVersion - the version of the claim
+     * @param slotVersions - the version stamps of the claimed slots when the player placed its tokens on them
+     */
+    public Claim(Integer[] cards, Player claimer,int claimVersion, int[] slotVersions){
+        this(-1, cards, claimer, claimVersion, slotVersions);
+    }
+
+    /**
+     * @param id - the id of the claim, unique in its game
+     * @param cards - the cards in the claim
+     * @param claimer - the player who made the claim
+     * @param claimVersion - the version of the claim
+     * @param slotVersions - the version stamps of the claimed slots when the player placed its tokens on them
+     */
+    public Claim(long id, Integer[] cards, Player claimer,int claimVersion, int[] slotVersions){
+        this.id = id;
         this.cards = cards;
         this.claimer = claimer;
         this.claimVersion = claimVersion;
+        this.slotVersions = slotVersions;
+        this.claimNanos = System.nanoTime();
+        this.result = new CompletableFuture<>();
+    }
+
+    /**
+     * Records the ruling on the claim. The claimer is told about it only when it is published.
+     * @pre - the claim was not published yet.
+     */
+    void rule(Result ruling) {
+        this.ruling = ruling;
+        validSet = ruling == Result.valid;
+        stale = ruling != Result.valid & ruling != Result.notASet;
+    }
+
+    /**
+     * Completes the result of the claim with its ruling. The result is completed once, so the claimer gets exactly one
+     * result for every claim it made.
+     * @pre - the claim was ruled on.
+     * @return false if the result was completed already.
+     */
+    boolean publish() {
+        return result.complete(ruling);
+    }
+
+    /**
+     * @return the result of the claim, completed when the dealer publishes its ruling.
+     */
+    public CompletableFuture<Result> result() {
+        return result;
     }
     @Override
     public String toString() {
-        return "Claim [cards=" + Arrays.toString(cards) + ", claimer=" + claimer.id + ", claimVersion=" + claimVersion
-                + ", validSet=" + validSet + "]";
+        return "Claim [id=" + id + ", cards=" + Arrays.toString(cards) + ", claimer=" + claimer.id + ", claimVersion=" + claimVersion
+                + ", slotVersions=" + Arrays.toString(slotVersions) + ", validSet=" + validSet + ", stale=" + stale + ", ruling=" + ruling + "]";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the claims of games and how long the dealers took to rule on them, for load testing.
+ * It may be shared by the dealers of many games at once.
+ * The latencies are kept in a log-linear histogram (8 buckets per power of 2), so a percentile is accurate to about
+ * 12% and recording a claim never allocates or locks.
+ */
+public class ClaimStatistics {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    /**
+     * How long the players used to wait for the result of a claim (10 tries of 100 ms) before they gave up on it and
+     * turned the claim in again. A result published later than this would have set off that recovery.
+     */
+    private static final long RESUBMIT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejectedOnSubmit = new LongAdder();
+    private final LongAdder valid = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder results = new LongAdder();
+    private final LongAdder duplicateResults = new LongAdder();
+    private final LongAdder lateResults = new LongAdder();
+
+    /**
+     * The number of claims ruled on per latency bucket (see bucket()).
+     */
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Called when a game is over.
+     */
+    void gameOver() {
+        games.increment();
+    }
+
+    /**
+     * Called when a player offers a claim to the dealer.
+     * @param accepted - false if the claim was rejected because one of its slots had changed.
+     */
+    void claimSubmitted(boolean accepted) {
+        submitted.increment();
+        if (!accepted) rejectedOnSubmit.increment();
+    }
+
+    /**
+     * Called when the dealer has ruled on a claim.
+     * @param claim - the claim, with the ruling.
+     * @param nanos - the time of the ruling (System.nanoTime()).
+     */
+    void claimRuled(Claim claim, long nanos) {
+        if (claim.stale) stale.increment();
+        else if (claim.validSet) valid.increment();
+        else invalid.increment();
+
+        long latency = Math.max(0, nanos - claim.claimNanos);
+        latencies.incrementAndGet(bucket(latency));
+        maxLatency.accumulate(latency);
+    }
+
+    /**
+     * Called when the dealer has published the result of a claim.
+     * @param claim - the claim.
+     * @param first - false if the result of the claim was published before.
+     * @param nanos - the time of the publishing (System.nanoTime()).
+     */
+    void resultPublished(Claim claim, boolean first, long nanos) {
+        if (!first) {
+            duplicateResults.increment();
+            return;
+        }
+        results.increment();
+        if (nanos - claim.claimNanos >= RESUBMIT_TIMEOUT_NANOS) lateResults.increment();
+    }
+
+    /**
+     * @return the histogram bucket of a latency.
+     */
+    private static int bucket(long nanos) {
+        if (nanos < LINEAR_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest latency that falls in a bucket.
+     */
+    private static long bucketLimit(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param percentile - a percentile between 0 and 100.
+     * @return the latency (in nanoseconds) that the given percent of the claims ruled on did not exceed.
+     */
+    public long latencyPercentile(double percentile) {
+        long ruled = valid.sum() + invalid.sum() + stale.sum();
+        long rank = (long) Math.ceil(ruled * percentile / 100.0);
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            count += latencies.get(bucket);
+            if (count >= rank && count > 0) return Math.min(bucketLimit(bucket), maxLatency.get());
+        }
+        return 0;
+    }
+
+    public long games() {return games.sum();}
+    public long sets() {return valid.sum();}
+
+    /**
+     * @param elapsedNanos - the time the games took.
+     * @return a report of the throughput, the latencies and the rejection rates.
+     */
+    public String report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long ruled = valid.sum() + invalid.sum() + stale.sum();
+        long claims = submitted.sum();
+        return String.format("%d games in %.2f s: %.2f games/sec, %.2f sets/sec%n", games(), seconds,
+                        games() / seconds, sets() / seconds)
+                + String.format("claims: %d submitted, %d rejected on submit (%.1f%%)%n", claims,
+                        rejectedOnSubmit.sum(), percent(rejectedOnSubmit.sum(), claims))
+                + String.format("rulings: %d valid, %d invalid (%.1f%%), %d stale (%.1f%%)%n", valid.sum(),
+                        invalid.sum(), percent(invalid.sum(), ruled), stale.sum(), percent(stale.sum(), ruled))
+                + String.format("claim latency (submit to ruling): p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                        latencyPercentile(50) / 1e6, latencyPercentile(90) / 1e6, latencyPercentile(99) / 1e6,
+                        latencyPercentile(99.9) / 1e6, maxLatency.get() / 1e6)
+                + String.format("results: %d published for %d claims, %d published twice, %d later than the %d ms resubmit timeout%n",
+                        results.sum(), claims, duplicateResults.sum(), lateResults.sum(),
+                        TimeUnit.NANOSECONDS.toMillis(RESUBMIT_TIMEOUT_NANOS));
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+}
@@ -1,21 +1,22 @@
 package bguspl.set.ex;
 import bguspl.set.Env;
+import bguspl.set.VirtualThreads;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the dealer's threads and data
  */
 public class Dealer implements Runnable {
 
-    public static final int SET_SIZE = 3;
     private static final int TIMER_UPDATE_CRITICAL_TICK_TIME = 25;
-    private static final int TIMER_UPDATE_TICK_TIME = 250;
-    private static final int TIMER_PADDING = TIMER_UPDATE_TICK_TIME*2;
+    private static final int TIMER_PADDING = 500;
 
     /**
      * The game environment object.
@@ -33,9 +34,34 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The number of cards in a set.
      */
-    private final LinkedList<Integer> deck;
+    private final int setSize;
+
+    /**
+     * A buffer for the cards checked for sets by the dealer thread (large enough for the whole deck).
+     */
+    private final int[] cardsBuffer;
+
+    /**
+     * Tracks whether there is a set left among the cards in the deck and on the table.
+     */
+    private final RemainingSets remainingSets;
+
+    /**
+     * The random stream for shuffling and dealing, used by the dealer thread only.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * Marks the deck cards that complete a pair of table cards to a set (see placeCardsFromClaim).
+     */
+    private final boolean[] completesTablePair;
 
     /**
      * The current timer mode.
@@ -55,10 +81,16 @@ public class Dealer implements Runnable {
     private volatile long reshuffleTime;
 
     /**
-     * The time when the dealer needs to reshuffle the deck due to turn timeout.
+     * The next deadline of the timer (a display update, the warning or the reshuffle), the dealer thread sleeps until
+     * then unless it is woken up by a claim.
      */
     private volatile long nextWakeTime;
 
+    /**
+     * The deadlines of the timer displayed by the dealer.
+     */
+    private final TimerSchedule timer;
+
     /**
      * The amount of time passed since the last set claimed.
      */
@@ -68,34 +100,65 @@ public class Dealer implements Runnable {
      * Holds all of the player threads
      */
     private Thread[] playerThreads;
-    
+
+    /**
+     * Pauses and resumes the threads of all the players at once
+     */
+    private final PauseBarrier pauseBarrier;
+
     /**
-     * a semaphore to control access to the gameVersion variable
+     * Creates the threads of the players and their AI
      */
-    private volatile Semaphore gameVersionAccess;
+    private final ThreadFactory threadFactory;
 
     /**
-     * a version indicator for claimSet() actions
-     * resets each shuffle
+     * The AI service of the current deal, shared by the computer players of this game only
+     */
+    private volatile AISuperSecretIntelligenceService secretService;
+
+    /**
+     * Counts the claims of the game for load testing (null if they are not counted)
+     */
+    private final ClaimStatistics statistics;
+    
+    /**
+     * a version indicator for the cards dealt, advanced every time the table is dealt again
+     * claims made before a deal are stale. claims made on the same deal are told apart by the slot versions of the table
+     * resets each game
      * 
      * @inv gameVersion >= 0
      */
-    private volatile Integer gameVersion;
-    
+    private final AtomicInteger gameVersion;
+
     /**
-     * a queue for claims made by the players
+     * the id of the next claim made in the game
      */
-    private volatile ConcurrentLinkedQueue<Claim> claimQueue;
+    private final AtomicLong nextClaimId;
     
     /**
-     * a semaphore to control access to the claimQueue variable
+     * a queue for claims made by the players, drained by the dealer thread
+     */
+    private final MpscRingBuffer<Claim> claimQueue;
+
+    /**
+     * the claims drained from the claim queue that are processed together (dealer thread only)
      */
-    private volatile Semaphore claimQueueAccess;
+    private final ArrayList<Claim> claimBatch;
 
     /**
-     * a listener for the dealer thread to wake up
+     * the claims of the batch that a player is notified about (dealer thread only)
      */
-    private volatile Object wakeListener;
+    private final ArrayList<Claim> playerClaims;
+
+    /**
+     * marks the slots taken by the valid claims of the batch (dealer thread only)
+     */
+    private final boolean[] slotsClaimed;
+
+    /**
+     * the dealer thread, the players unpark it when they offer a claim (null until it starts)
+     */
+    private volatile Thread dealerThread;
 
     /**
      * True iff there are no more sets in the deck.
@@ -113,16 +176,44 @@ public class Dealer implements Runnable {
     }
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, Thread::new);
+    }
+
+    /**
+     * @param threadFactory - creates the threads of the players and their AI (e.g. for a game host)
+     */
+    public Dealer(Env env, Table table, Player[] players, ThreadFactory threadFactory) {
+        this(env, table, players, threadFactory, null);
+    }
+
+    /**
+     * @param threadFactory - creates the threads of the players and their AI (e.g. for a game host),
+     *                        unless they run on virtual threads (see Config.virtualThreads)
+     * @param statistics - counts the claims of the game (null to not count them)
+     */
+    public Dealer(Env env, Table table, Player[] players, ThreadFactory threadFactory, ClaimStatistics statistics) {
         this.env = env;
+        this.threadFactory = env.config.virtualThreads ? VirtualThreads.factory() : threadFactory;
+        this.statistics = statistics;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toCollection(LinkedList::new));
+        setSize = env.util.setSize();
+        cardsBuffer = new int[env.config.deckSize];
+        remainingSets = new RemainingSets(env.util, env.config.deckSize);
+        random = env.random.split();
+        deck = new Deck(env.config.deckSize, random);
+        completesTablePair = new boolean[env.config.deckSize];
         playerThreads = new Thread[players.length];
-        wakeListener = new Object();
-        claimQueue = new ConcurrentLinkedQueue<>();
-        gameVersionAccess = new Semaphore(1,true);
-        claimQueueAccess = new Semaphore(players.length,true);
+        pauseBarrier = new PauseBarrier();
+        gameVersion = new AtomicInteger();
+        nextClaimId = new AtomicLong();
+        // every player has at most one claim in flight
+        claimQueue = new MpscRingBuffer<>(players.length);
+        claimBatch = new ArrayList<>(players.length);
+        playerClaims = new ArrayList<>(players.length);
+        slotsClaimed = new boolean[env.config.tableSize];
         mHints = env.config.hints; 
+        timer = new TimerSchedule(env.config.turnTimeoutWarningMillis, TIMER_PADDING, TIMER_UPDATE_CRITICAL_TICK_TIME);
 
         if (env.config.turnTimeoutMillis > 0) {
             timerMode = TimerMode.countdownTimerMode;
@@ -146,10 +237,11 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+        dealerThread = Thread.currentThread();
         createPlayerThreads();
         elapsedTime = System.currentTimeMillis();
         shuffleDeck();
-        gameVersion = 0;
+        gameVersion.set(0);
         while (!shouldFinish()){
             switch (timerMode) {
                 case countdownTimerMode: {
@@ -167,7 +259,11 @@ public class Dealer implements Runnable {
             }
         }
         terminatePlayers();
-        if(env.util.findSets(deck, 1).size() == 0) announceWinners();
+
+        // the last changes of the table are shown before the winners, unless the game was terminated
+        table.stopAnimation(terminate);
+        if(!env.util.anySet(cardsBuffer, deck.copyTo(cardsBuffer, 0))) announceWinners();
+        if(statistics != null) statistics.gameOver();
         System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
     }
 
@@ -242,20 +338,19 @@ public class Dealer implements Runnable {
 
     /**
      * in Countdown mode, Dealer spends most of its time in this method.
-     * it sleeps until it is woken up by a player thread or needs to updates the timer.
+     * it sleeps until it is woken up by a player thread or the next deadline of the timer.
+     * the display is updated only when one of its visible digits changes.
      */
     private void startCountdownTimer() {    
         updateTimerDisplay(true);
         while(terminate == false & noMoreSets == false & reshuffleTime > System.currentTimeMillis()){
-            updateNextWakeTime(); 
-            while(terminate == false & noMoreSets == false & reshuffleTime > System.currentTimeMillis() & nextWakeTime > System.currentTimeMillis()){
+            sleepUntilWokenOrTimeout();
+            if(claimQueue.isEmpty() == false){
+                processClaims();
+            }
+            if(timer.tickDue(System.currentTimeMillis())){
                 updateTimerDisplay(false);
-                sleepUntilWokenOrTimeout();
-                if(claimQueue.isEmpty() == false){
-                    processClaims();
-                }
-            } 
-                
+            }
         }
         if(terminate == false) env.ui.setCountdown(0,true);   
     }
@@ -263,18 +358,17 @@ public class Dealer implements Runnable {
 
     /**
      * in Elapsed mode, Dealer spends most of its time in this method.
-     * it sleeps until it is woken up by a player thread or needs to updates the timer.
+     * it sleeps until it is woken up by a player thread or the displayed time changes.
      */
     private void startElapsedTimer() {
         updateElapsedTimeDisplay(true);
         while(terminate == false & noMoreSets == false){
-            updateNextWakeTime();
-            while(terminate == false & noMoreSets == false & nextWakeTime > System.currentTimeMillis()){
+            sleepUntilWokenOrTimeout();
+            if(claimQueue.isEmpty() == false){
+                processClaims();
+            }
+            if(timer.tickDue(System.currentTimeMillis())){
                 updateElapsedTimeDisplay(false);
-                sleepUntilWokenOrTimeout();
-                if(claimQueue.isEmpty() == false){
-                    processClaims();
-                }
             }
         }
         if(terminate == false) env.ui.setElapsed(0);
@@ -307,91 +401,78 @@ public class Dealer implements Runnable {
      * @param cards - The cards forming the set
      * @param claimer - The player who claims the set
      * @param claimVersion - The gameVersion according to getGameVersion()
+     * @param slotVersions - The versions of the claimed slots according to table.getSlotVersion()
+     * @return the result of the claim. it is completed when the dealer rules on the claim,
+     *  or right away with slotChanged if one of the claimed slots has changed since its version was read
+     *  and with queueFull if the claim queue is full
      */
-    public boolean  claimSet(Integer[] cards, Player claimer, int claimVersion){
+    public CompletableFuture<Claim.Result> claimSet(Integer[] cards, Player claimer, int claimVersion, int[] slotVersions){
 
-        // this is a critical section that must be synchronized 
-        // because this is the solution to multiple players claiming the same cards
-        // at virtually the same time. we combat this problem by using versions for claims 
-        // and a fair semaphore.
-        try{
-            gameVersionAccess.acquire();
-        }catch(InterruptedException ignored){}
-        if(claimVersion == gameVersion) {
-            gameVersion++;
-            gameVersionAccess.release();
-        }
-        else {
+        // this is the solution to multiple players claiming the same cards
+        // at virtually the same time. we combat this problem by using versions for the slots:
+        // a claim is rejected only if one of its own slots changed since the player placed a token on it,
+        // so claims on other slots are not affected by it
+        Claim claim = new Claim(nextClaimId.getAndIncrement(),cards,claimer,claimVersion,slotVersions);
+        boolean stale = isStale(cards, claimVersion, slotVersions);
+        if(statistics != null) statistics.claimSubmitted(stale == false);
+        if(stale) {
 
-            // another claimSet was made virtually at the same time as this one but reached the dealer first.
-            // To be able to make sure that the player isn't penalized for claiming cards
-            // that were just replaced thus claiming a "wrong" set, the player must check for changes 
-            // and claim the set again if none of his cards were affected by the claim
+            // another claim replaced some of these cards before this one reached the dealer.
+            // the player will be notified about it and must not be penalized for claiming cards
+            // that were just replaced thus claiming a "wrong" set
 
-            gameVersionAccess.release();
             // the claim was rejected
-            return false;
+            claim.rule(Claim.Result.slotChanged);
+            publishResult(claim);
+            return claim.result();
         }
 
-        claimQueueAccess.acquireUninterruptibly(1);
-        claimQueue.add(new Claim(cards,claimer,claimVersion));
-        claimQueueAccess.release(1);
+        // the buffer holds a claim per player, so it is only full if a claim is offered twice.
+        // the claim is not queued then, the player decides whether to turn it in again
+        if(claimQueue.offer(claim) == false){
+            claim.rule(Claim.Result.queueFull);
+            publishResult(claim);
+            return claim.result();
+        }
 
-        // wake up the dealer thread to process the claim
-        synchronized(wakeListener){wakeListener.notifyAll();}
+        // wake up the dealer thread to process the claim. unparking takes no lock, so the players do not wait for
+        // each other or for the dealer here
+        wakeDealer();
 
         // the claim was accepted
-        return true;      
+        return claim.result();
     }
 
     /**
-     * processes all the claims that were made by the players
+     * @return true iff the cards were dealt again or one of the slots changed since the versions were read
      */
-    private void processClaims() {
-        claimQueueAccess.acquireUninterruptibly(players.length);
-        while(claimQueue.isEmpty() == false){
-            Claim claim = claimQueue.remove();
-            handleClaimedSet(claim);
-        }
-        claimQueueAccess.release(players.length);
+    private boolean isStale(Integer[] slots, int claimVersion, int[] slotVersions) {
+        return claimVersion != gameVersion.get() || table.slotsUnchanged(slots, slotVersions) == false;
     }
-    
+
     /**
-     * handles a claim that was verified as a true set
-     * and notifies the players accordingly
-     * @param claim
+     * processes all the claims that were made by the players as one batch:
+     * the claims are ruled on in arrival order, the table is changed once for all the valid ones
+     * and every player is notified once about all the results that concern it
      */
-    private void handleClaimedSet(Claim claim) {
-         if(isValidSet(claim.cards)){
+    private void processClaims() {
+        Claim claim;
+        while((claim = claimQueue.poll()) != null){
+            claimBatch.add(claim);
+        }
+        if(claimBatch.isEmpty()) return;
 
-            // remove the cards from the deck and replace them with new cards
-            // while making sure that there are sets on the table
-             clearSlots(claim.cards);
-             if (deck.size() >= SET_SIZE) {
-                placeCardsFromClaim();
-                if (mHints) {
-                    table.hints();;
-                }
-             }
-
-            updateTimerDisplay(true);
-            claim.validSet = true;
-
-            //notify the claimer first and then the other players
-            claim.claimer.notifyClaim(claim);
-            for(Player player : players){
-                if(player!=claim.claimer && (
-                        player.getState() == Player.State.waitingForActivity |
-                        player.getState() == Player.State.waitingForClaimResult|
-                        player.getState() == Player.State.turningInClaim)){
-                    player.notifyClaim(claim); 
-                }
+        int validClaims = ruleOnClaims();
+        if(statistics != null){
+            long now = System.nanoTime();
+            for(Claim ruled : claimBatch){
+                statistics.claimRuled(ruled, now);
             }
-        }else {
-            // if the claim was not a valid set notify the claimer only.
-            // no need to notify the other players
-            claim.claimer.notifyClaim(claim);;
         }
+        if(validClaims > 0) replaceClaimedCards(validClaims);
+        publishClaimResults();
+        claimBatch.clear();
+
        if (shouldFinish()) {
             // if there are no more sets in the game then we want to end the game immediately
             // this is done by setting the noMoreSets flag to true
@@ -401,46 +482,205 @@ public class Dealer implements Runnable {
        }
     }
 
+    /**
+     * rules on the claims of the batch in arrival order, before the table is changed.
+     * a claim on a slot that an earlier valid claim of the batch took is stale, just like a claim
+     * on a slot that was changed before the batch
+     * @return the number of valid claims
+     */
+    private int ruleOnClaims() {
+        int validClaims = 0;
+        for(Claim claim : claimBatch){
+            if(isStale(claim.cards, claim.claimVersion, claim.slotVersions)){
+                claim.rule(Claim.Result.slotChanged);
+            }else if(anySlotClaimed(claim.cards)){
+                claim.rule(Claim.Result.slotTaken);
+            }else if(isValidSet(claim.cards)){
+                claim.rule(Claim.Result.valid);
+                for(int slot : claim.cards){
+                    slotsClaimed[slot] = true;
+                }
+                validClaims++;
+            }else claim.rule(Claim.Result.notASet);
+        }
+        Arrays.fill(slotsClaimed, false);
+        return validClaims;
+    }
+
+    /**
+     * @return true iff one of the slots was taken by an earlier valid claim of the batch
+     */
+    private boolean anySlotClaimed(Integer[] slots) {
+        for(int slot : slots){
+            if(slotsClaimed[slot]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * removes the cards of all the valid claims of the batch from the table and then replaces them
+     * with new cards from the deck, while making sure that there are sets on the table
+     * @param validClaims - the number of valid claims in the batch
+     */
+    private void replaceClaimedCards(int validClaims) {
+        for(Claim claim : claimBatch){
+            if(claim.validSet) clearSlots(claim.cards);
+        }
+        if (deck.size() >= setSize) {
+            for(int i = 0; i < validClaims; i++){
+                placeCardsFromClaim();
+            }
+            if (mHints) {
+                table.hints();;
+            }
+        }
+        updateTimerDisplay(true);
+    }
+
+    /**
+     * notifies every player once about the valid claims of the other players in the batch,
+     * then completes the result of every claim of the batch. the claimers are woken up by their results
+     */
+    private void publishClaimResults() {
+        for(Player player : players){
+            for(Claim claim : claimBatch){
+                if(claim.claimer != player & claim.validSet) playerClaims.add(claim);
+            }
+            if(playerClaims.isEmpty() == false) player.notifyClaims(playerClaims);
+            playerClaims.clear();
+        }
+        for(Claim claim : claimBatch){
+            publishResult(claim);
+        }
+    }
+
+    /**
+     * completes the result of a claim that was ruled on. every path a claim can take ends here exactly once:
+     * it is rejected on submission, not queued because the queue is full, withdrawn, or ruled on in a batch
+     */
+    private void publishResult(Claim claim) {
+        boolean first = claim.publish();
+        if(statistics != null) statistics.resultPublished(claim, first, System.nanoTime());
+    }
+
 
     /**
      * this method replaces the claimed cards with new cards from the deck
-     * and makes sure there is always a set on the table
+     * and makes sure there is always a set on the table.
+     * the cards are chosen with completion lookups against the cards left on the table:
+     * if there is no set on the table, the first deck card that completes a pair of table cards is placed,
+     * or else the first two deck cards that complete a table card, or else a set from the deck.
+     * the rest of the cards placed are the next cards of the deck.
      */
     private void placeCardsFromClaim() {
+        if (deck.size() < setSize) return;
+        if (setSize != 3 || env.util.completeSet(deck.get(0), deck.get(1)) < 0) {
+            placeCardsFromWindow();
+            return;
+        }
 
-        //this is a list of the cards that are currently on the table
-        //after removing the cards that were claimed
-        LinkedList<Integer> cardsToPlace_U_Table = table.getCardsOnTable();
+        int[] chosen = new int[setSize];
+        int count = table.hasSet() ? 0 : chooseCompletingCards(chosen);
+        for (int i = 0; count < setSize && i < deck.size(); i++) {
+            int card = deck.get(i);
+            boolean alreadyChosen = false;
+            for (int j = 0; j < count; j++) {
+                alreadyChosen |= chosen[j] == card;
+            }
+            if (!alreadyChosen) {
+                chosen[count++] = card;
+            }
+        }
+        for (int card : chosen) {
+            table.placeCard(card);
+            deck.remove(card);
+        }
+    }
+
+    /**
+     * Chooses the fewest deck cards that form a set with the cards on the table (for sets of 3 cards).
+     * @param chosen - the array to write the chosen cards into.
+     * @return the number of cards chosen (0 if there is no set in the deck and on the table).
+     */
+    private int chooseCompletingCards(int[] chosen) {
+        int tableLength = table.getCardsOnTable(cardsBuffer, 0);
+
+        // a deck card that completes a pair of table cards
+        Arrays.fill(completesTablePair, false);
+        for (int i = 0; i < tableLength; i++) {
+            for (int j = i + 1; j < tableLength; j++) {
+                int completion = env.util.completeSet(cardsBuffer[i], cardsBuffer[j]);
+                if (deck.contains(completion)) completesTablePair[completion] = true;
+            }
+        }
+        for (int i = 0; i < deck.size(); i++) {
+            if (completesTablePair[deck.get(i)]) {
+                chosen[0] = deck.get(i);
+                return 1;
+            }
+        }
+
+        // two deck cards that complete a table card
+        for (int i = 0; i < deck.size(); i++) {
+            int card = deck.get(i);
+            for (int j = 0; j < tableLength; j++) {
+                int completion = env.util.completeSet(cardsBuffer[j], card);
+                if (completion != card && deck.contains(completion)) {
+                    chosen[0] = card;
+                    chosen[1] = completion;
+                    return 2;
+                }
+            }
+        }
+
+        // a set of deck cards
+        int[] set = findSetInDeck();
+        if (set == null) return 0;
+        System.arraycopy(set, 0, chosen, 0, set.length);
+        return set.length;
+    }
+
+    /**
+     * replaces the claimed cards with the first window of consecutive deck cards that
+     * leaves a set on the table (for set sizes without completion lookups).
+     */
+    private void placeCardsFromWindow() {
+
+        //the first setSize cards of the buffer are the cards to place (a window over the deck),
+        //followed by the cards that are currently on the table after removing the cards that were claimed
+        int[] cardsToPlace_U_Table = cardsBuffer;
+        int length = setSize + table.getCardsOnTable(cardsToPlace_U_Table, setSize);
 
         boolean done = false;
 
-        if(deck.size() >= SET_SIZE){
+        if(deck.size() >= setSize){
 
-            //takes the next 3 cards from the deck and places them in the front of the list
-            ListIterator<Integer> iter = deck.listIterator();
-            for (int i = 0; i < SET_SIZE; i++) {
-                cardsToPlace_U_Table.addFirst(iter.next());
+            //takes the next setSize cards from the deck and places them in the window
+            int next = 0;
+            for (; next < setSize; next++) {
+                cardsToPlace_U_Table[next] = deck.get(next);
             }
+            int oldest = 0;
             //==============================================================================
 
             while(!done){
 
-                // this checks if there is a set in the list and if so it places the last 3 cards 
-                // that were added to the list on the table and removes them from the deck
-                if(env.util.findSets(cardsToPlace_U_Table, 1).size() != 0){
-                    for (int i = 0; i < SET_SIZE; i++) {
-                        // place iter.previous() on table and delete it from deck
-                        Integer card = iter.previous();
+                // this checks if there is a set in the buffer and if so it places the last setSize cards 
+                // that were added to the window on the table and removes them from the deck
+                if(env.util.anySet(cardsToPlace_U_Table, length)){
+                    for (int i = 0; i < setSize; i++) {
+                        // place the window card on table and delete it from deck
+                        int card = cardsToPlace_U_Table[i];
                         table.placeCard(card);
-                        iter.remove();
+                        deck.remove(card);
                     }
                     done = true;
 
-                 // if there is no set in the list then it removes the oldest card added to the list
-                 // and adds the next card from the deck to the list in a FIFO fashion
-                }else if(iter.hasNext()){
-                    cardsToPlace_U_Table.remove(SET_SIZE-1);
-                    cardsToPlace_U_Table.addFirst(iter.next());
+                 // if there is no set in the buffer then it replaces the oldest card in the window
+                 // with the next card from the deck in a FIFO fashion
+                }else if(next < deck.size()){
+                    cardsToPlace_U_Table[oldest] = deck.get(next++);
+                    oldest = (oldest + 1) % setSize;
 
 
                 // if all fails and you can't find a set just place the
@@ -460,7 +700,32 @@ public class Dealer implements Runnable {
      * @return
      */
     public int getGameVersion() {
-        return gameVersion;
+        return gameVersion.get();
+    }
+
+    /**
+     * @return the AI service of the current deal
+     */
+    public AISuperSecretIntelligenceService getSecretService() {
+        return secretService;
+    }
+
+    /**
+     * Creates a thread of this game
+     * @param runnable - the code the thread runs
+     * @param name - the name of the thread
+     */
+    public Thread newThread(Runnable runnable, String name) {
+        Thread thread = threadFactory.newThread(runnable);
+        thread.setName(name);
+        return thread;
+    }
+
+    /**
+     * @return the number of cards in a set
+     */
+    public int getSetSize() {
+        return setSize;
     }
 
     /**
@@ -468,6 +733,7 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        wakeDealer();
     }
 
     //===========================================================
@@ -479,6 +745,7 @@ public class Dealer implements Runnable {
      * Fills the table with cards from the deck. Note that this method
      * fills the table in random order, as opposed to
      * placeCardsOnTable() which fills the table in order of the deck.
+     * The cards dealt always contain a set if there is one in the deck.
      */
     private void dealCardsRandomly() {
 
@@ -486,35 +753,87 @@ public class Dealer implements Runnable {
         // this is a random order and the slots themselves are determined by where
         // the cards were before they were removed from the table.
         LinkedList<Integer> slots = table.getCardsPlacementSlotsOrder();
-
-        // this randomizes the deck until there is a set in the first 12 cards.
-        // this is done to make sure that there is a set on the table after reshuffling
-        while (env.util.findSets(deck.subList(0,slots.size()) , 1).size() == 0) {
-            shuffleDeck();
+        int length = Math.min(slots.size(), deck.size());
+
+        // the layout is seeded with a set from the deck and filled with random cards,
+        // this makes sure that there is a set on the table after reshuffling without reshuffling again and again
+        int[] layout = new int[length];
+        int count = 0;
+        if (length >= setSize) {
+            int[] set = findSetInDeck();
+            if (set != null) {
+                for (int card : set) {
+                    deck.remove(card);
+                    layout[count++] = card;
+                }
+            }
         }
+        while (count < length) {
+            layout[count++] = deck.draw();
+        }
+        gameVersion.incrementAndGet();
+        // the cards of the set are placed in random slots too
+        Deck.shuffle(layout, length, random);
 
         // this places the cards on the table in the order determined by the slots list
-        for(Integer slot : slots){
-            Integer cardToPlace = deck.get(0);
-            deck.remove(0);
-            table.placeCard(cardToPlace,slot);
+        Iterator<Integer> slotsIter = slots.iterator();
+        for (int card : layout) {
+            table.placeCard(card, slotsIter.next());
         }
+    }
 
+    /**
+     * Finds a set in the deck. Sets of 3 cards are found with completion lookups: the first pair of cards
+     * (in the random order of the deck) whose completing card is in the deck too.
+     * @return the cards of a set in the deck or null if there is none.
+     */
+    private int[] findSetInDeck() {
+        if (setSize == 3 && deck.size() >= 2 && env.util.completeSet(deck.get(0), deck.get(1)) >= 0) {
+            for (int i = 0; i < deck.size(); i++) {
+                for (int j = i + 1; j < deck.size(); j++) {
+                    int completion = env.util.completeSet(deck.get(i), deck.get(j));
+                    if (completion != deck.get(i) && completion != deck.get(j) && deck.contains(completion)) {
+                        return new int[]{deck.get(i), deck.get(j), completion};
+                    }
+                }
+            }
+            return null;
+        }
+
+        int[][] found = {null};
+        env.util.forEachSet(cardsBuffer, deck.copyTo(cardsBuffer, 0), set -> {
+            found[0] = set.clone();
+            return false;
+        });
+        return found[0];
     }
 
     /**
     * Checks if the given set of cards is a valid set.
     */
     public boolean isValidSet(Integer[] slots) {
-        // get an int[] card array from the slots array while filtering out null slots
-        slots = Arrays.stream(slots).map(i->table.slotToCard[i]).toArray(Integer[]::new);
-        int[] cards = Arrays.stream(slots).filter(Objects::nonNull).mapToInt(i->i).toArray();
-
-        // if the resulting array is not the correct size then it is not a valid set
-        // because there was a null slot when converting the slots to cards
-        if(cards.length != SET_SIZE)
+        if(slots.length != setSize)
             return false;
 
+        // the classic 3 card sets are checked without allocating
+        if(setSize == 3){
+            // if one of the slots is empty then it is not a valid set
+            Integer card1 = table.slotToCard[slots[0]];
+            Integer card2 = table.slotToCard[slots[1]];
+            Integer card3 = table.slotToCard[slots[2]];
+            if(card1 == null || card2 == null || card3 == null)
+                return false;
+
+            return env.util.testSet(card1, card2, card3);
+        }
+
+        int[] cards = new int[setSize];
+        for (int i = 0; i < setSize; i++) {
+            Integer card = table.slotToCard[slots[i]];
+            if(card == null)
+                return false;
+            cards[i] = card;
+        }
         return env.util.testSet(cards);
     }
 
@@ -522,10 +841,21 @@ public class Dealer implements Runnable {
      * Terminates all the player threads
      */
     private void pausePlayerThreads() {   
-        if(env.config.computerPlayers > 0) Player.secretService.continueExecution = false;
+        if(env.config.computerPlayers > 0) secretService.continueExecution = false;
+
+        // all the players are asked to pause at once, then the dealer waits for the last of them
         for(Player player : players){
             player.pause();
         }
+        pauseBarrier.awaitPaused();
+
+        // the players cleared their tokens when they paused, so the claims that were not ruled on yet are withdrawn.
+        // otherwise they would pile up in the buffer from deal to deal
+        Claim claim;
+        while((claim = claimQueue.poll()) != null){
+            claim.rule(Claim.Result.withdrawn);
+            publishResult(claim);
+        }
     }
 
     /**
@@ -533,10 +863,8 @@ public class Dealer implements Runnable {
      */
     private void resumePlayerThreads() {
         if(env.config.computerPlayers > 0) 
-            Player.secretService = new AISuperSecretIntelligenceService(env, this,table);
-        for(Player player : players){
-            player.resume();
-        }
+            secretService = new AISuperSecretIntelligenceService(env, this,table);
+        pauseBarrier.resume();
     }
 
     /**
@@ -546,9 +874,13 @@ public class Dealer implements Runnable {
         for(int i = 0; i< playerThreads.length; i++)
         {
             String name = "Player "+ players[i].id +", "+(players[i].human ? "Human":"AI");
-            playerThreads[i] = new Thread(players[i],name);
+            players[i].usePauseBarrier(pauseBarrier);
+            playerThreads[i] = newThread(players[i],name);
             playerThreads[i].start();
         }
+
+        // the players start paused
+        pauseBarrier.awaitPaused();
     }
 
     /**
@@ -561,6 +893,8 @@ public class Dealer implements Runnable {
     }
 
     private void terminatePlayers() {
+        // the players are paused, they learn that the game is over when the barrier releases them for good
+        pauseBarrier.terminate();
         for(int i=players.length-1; i>=0; i--){
             players[i].terminate();
         }  
@@ -595,18 +929,25 @@ public class Dealer implements Runnable {
     }
     
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the next deadline of the timer or until the thread is awakened by a claim.
      */
     private void sleepUntilWokenOrTimeout() {
-        
-        if(reshuffleTime-System.currentTimeMillis() > 0){
-            if(nextWakeTime-System.currentTimeMillis() > 0)
-                try{
-                    synchronized(wakeListener){wakeListener.wait(nextWakeTime-System.currentTimeMillis());
-                    }
-            }catch(InterruptedException ignored){}
+        long timeout = nextWakeTime - System.currentTimeMillis();
+
+        // claims are offered before the dealer is unparked, and an unpark that comes before the dealer parks is kept,
+        // so none is missed by checking here
+        if(timeout > 0 && claimQueue.isEmpty()){
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
         }
     }
+
+    /**
+     * Wakes up the dealer thread if it is parked, or keeps it from parking next time.
+     */
+    private void wakeDealer() {
+        Thread thread = dealerThread;
+        if(thread != null) LockSupport.unpark(thread);
+    }
     
     /**
      * Reset and/or update the countdown and the countdown display.
@@ -614,19 +955,25 @@ public class Dealer implements Runnable {
     private void updateTimerDisplay(boolean reset) {
         
             if (timerMode == TimerMode.countdownTimerMode) {
-                if (reset) reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+                long now = System.currentTimeMillis();
+                if (reset) {
+                    // the players can only place tokens on the cards once they are shown, so the turn starts then
+                    reshuffleTime = table.shownAt() + env.config.turnTimeoutMillis;
+                    timer.countdownTo(reshuffleTime, now);
+                }
 
                 // this if statement is to prevent the UI from being updated after the game has been terminated because
                 // it causes a deadlock in linux for some reason out of our control 
                 if(terminate == false){
-                    env.ui.setCountdown(reshuffleTime - System.currentTimeMillis() + TIMER_PADDING,
-                    reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis);
+                    env.ui.setCountdown(timer.displayed(now), timer.warning(now));
                 }
+                timer.ticked(now);
+                nextWakeTime = timer.nextDeadline();
             } else if (timerMode == TimerMode.elapsedTimerMode) {
                 updateElapsedTimeDisplay(reset);
             
 
-            // In No Timer mode, the timer display is not updated as it is not needed.
+            // In No timer mode, the timer display is not updated as it is not needed.
         }
     }
 
@@ -634,13 +981,19 @@ public class Dealer implements Runnable {
      * Updates the elapsed time display.
      */
     private void updateElapsedTimeDisplay(boolean reset){
-        if (reset) elapsedTime = System.currentTimeMillis();
+        long now = System.currentTimeMillis();
+        if (reset) {
+            elapsedTime = now;
+            timer.countUpFrom(elapsedTime, now);
+        }
 
         // this if statement is to prevent the UI from being updated after the game has been terminated because
         // it causes a deadlock in linux for some reason out of our control 
         if (!terminate) {
-            env.ui.setElapsed(System.currentTimeMillis() - elapsedTime + TIMER_PADDING);
+            env.ui.setElapsed(timer.displayed(now));
         }
+        timer.ticked(now);
+        nextWakeTime = timer.nextDeadline();
     }
 
     /**
@@ -649,6 +1002,9 @@ public class Dealer implements Runnable {
      */
     private void clearSlots(Integer[] slots) {
         for(int slot : slots){
+            // the claimed cards leave the game
+            Integer card = table.slotToCard[slot];
+            if(card != null) remainingSets.remove(card);
             table.removeCard(slot);
         } 
     }
@@ -657,16 +1013,14 @@ public class Dealer implements Runnable {
     * Shuffles the deck
     */
     private void shuffleDeck() {
-        Collections.shuffle(deck);
+        deck.shuffle();
     }
        
     /*
-    * Removes one card from the deck and places it on the table.
+    * Removes a random card from the deck and places it on the table.
     */
     private void placeNextCardOnTable() {
-        int cardToPlace = deck.get(0);
-        deck.remove(0);
-        table.placeCard(cardToPlace);
+        table.placeCard(deck.draw());
     }
 
     /**
@@ -703,20 +1057,7 @@ public class Dealer implements Runnable {
      * @return true iff there are no possible sets.
      */
     private boolean allSetsDepleted() {
-        
-        LinkedList<Integer> allCards = new LinkedList<>();
-        allCards.addAll(deck);
-        allCards.addAll(table.getCardsOnTable());
-
-        return env.util.findSets(allCards, 1).size() == 0;
-    }
-
-    /**
-     * Updates the next wake time of the dealer thread.
-     */
-    private void updateNextWakeTime() {
-        nextWakeTime =  reshuffleTime-System.currentTimeMillis() > env.config.turnTimeoutWarningMillis ?
-            System.currentTimeMillis()+TIMER_UPDATE_TICK_TIME : System.currentTimeMillis()+TIMER_UPDATE_CRITICAL_TICK_TIME;
+        return !remainingSets.hasSet();
     }
 
     //========================================================================================================|
@@ -776,9 +1117,7 @@ public class Dealer implements Runnable {
         System.out.println("claimQueue.isEmpty():"+claimQueue.isEmpty());
         System.out.println("claimQueue.size:"+claimQueue.size());
         System.out.println("claimQueue.size:");
-        for(Claim claim : claimQueue){
-            System.out.println(claim);
-        }
+        claimQueue.forEachPending(System.out::println);
         System.out.println("====================================");
     }
     
@@ -0,0 +1,126 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * The cards in the dealer's deck, kept in a primitive array.
+ * Cards are drawn with partial Fisher-Yates steps (a random card is swapped with the last one and removed), so the deck
+ * never has to be shuffled as a whole in order to draw random cards. Any card can be looked up or removed in O(1).
+ * Used by the dealer thread only.
+ */
+class Deck {
+
+    /**
+     * The cards in the deck in cards[0] ... cards[size - 1].
+     */
+    private final int[] cards;
+    private int size;
+
+    /**
+     * The index of every card in cards (-1 if it is not in the deck).
+     */
+    private final int[] positions;
+
+    private final SplittableRandom random;
+
+    /**
+     * @param deckSize - the number of cards in the game, all of them are in the deck at first.
+     * @param random   - the random source for drawing and shuffling.
+     */
+    Deck(int deckSize, SplittableRandom random) {
+        this.random = random;
+        cards = new int[deckSize];
+        positions = new int[deckSize];
+        for (int card = 0; card < deckSize; card++) {
+            cards[card] = card;
+            positions[card] = card;
+        }
+        size = deckSize;
+    }
+
+    /**
+     * @return the number of cards in the deck.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true iff the card is in the deck.
+     */
+    boolean contains(int card) {
+        return positions[card] >= 0;
+    }
+
+    /**
+     * @param index - an index between 0 and size() - 1.
+     * @return the card at the index (the order of the cards is random after a shuffle).
+     */
+    int get(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Returns a card to the deck.
+     */
+    void add(int card) {
+        positions[card] = size;
+        cards[size++] = card;
+    }
+
+    /**
+     * Removes a card from the deck (moving the last card into its place).
+     */
+    void remove(int card) {
+        int position = positions[card];
+        if (position < 0) return;
+        int last = cards[--size];
+        cards[position] = last;
+        positions[last] = position;
+        positions[card] = -1;
+    }
+
+    /**
+     * Removes a random card from the deck.
+     * @pre - size() > 0
+     * @return the card removed.
+     */
+    int draw() {
+        int card = cards[random.nextInt(size)];
+        remove(card);
+        return card;
+    }
+
+    /**
+     * Puts the cards of the deck in a random order.
+     */
+    void shuffle() {
+        shuffle(cards, size, random);
+        for (int i = 0; i < size; i++) {
+            positions[cards[i]] = i;
+        }
+    }
+
+    /**
+     * Puts the first length cards of an array in a random order (Fisher-Yates).
+     */
+    static void shuffle(int[] cards, int length, SplittableRandom random) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * Copies the cards of the deck into an array.
+     * @param buffer - the array to copy the cards into.
+     * @param from   - the index in the array of the first card.
+     * @return the number of cards copied.
+     */
+    int copyTo(int[] buffer, int from) {
+        System.arraycopy(cards, 0, buffer, from, size);
+        return size;
+    }
+}
@@ -0,0 +1,168 @@
+package bguspl.set.ex;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The events sent to a player thread, in the order they were posted.
+ * Any thread may post an event, only the player thread takes them. The queue is lock-free and the player thread parks
+ * while it is empty, so every post wakes it up exactly once and it never polls on a timeout.
+ */
+public class Mailbox {
+
+    /**
+     * The types of events
+     */
+    public enum Type {
+        click,
+        claim,
+        pause,
+        terminate
+    }
+
+    /**
+     * An event for the player thread.
+     */
+    public static final class Event {
+        public final Type type;
+
+        /**
+         * The slot of a click (-1 for other events)
+         */
+        public final int slot;
+
+        /**
+         * The claim the dealer ruled on (null for other events)
+         */
+        public final Claim claim;
+
+        private Event(Type type, int slot, Claim claim) {
+            this.type = type;
+            this.slot = slot;
+            this.claim = claim;
+        }
+    }
+
+    private static final Event PAUSE = new Event(Type.pause, -1, null);
+    private static final Event TERMINATE = new Event(Type.terminate, -1, null);
+
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The events the player thread took and put back for its next state, they come before the posted events.
+     * Used by the player thread only.
+     */
+    private final ArrayDeque<Event> putBack = new ArrayDeque<>();
+
+    /**
+     * The thread that takes the events (null until it starts)
+     */
+    private volatile Thread consumer;
+
+    /**
+     * Called by the player thread when it starts.
+     */
+    void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    void postClick(int slot) {
+        post(new Event(Type.click, slot, null));
+    }
+
+    /**
+     * Posts the claims in order and wakes up the player thread once.
+     */
+    void postClaims(List<Claim> claims) {
+        for (Claim claim : claims) {
+            events.offer(new Event(Type.claim, -1, claim));
+        }
+        wake();
+    }
+
+    /**
+     * Posts a pause event. The player's state was changed before, the event only wakes the player thread up.
+     */
+    void postPause() {
+        post(PAUSE);
+    }
+
+    /**
+     * Posts a terminate event. The player's state was changed before, the event only wakes the player thread up.
+     */
+    void postTerminate() {
+        post(TERMINATE);
+    }
+
+    private void post(Event event) {
+        events.offer(event);
+        wake();
+    }
+
+    /**
+     * Wakes up the player thread without posting an event.
+     */
+    void wake() {
+        Thread thread = consumer;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return the next event, or null if there is none.
+     */
+    public Event poll() {
+        Event event = putBack.poll();
+        return event != null ? event : events.poll();
+    }
+
+    /**
+     * Puts an event that was taken back in front of the other events, for the next state of the player to handle.
+     */
+    public void putBack(Event event) {
+        putBack.push(event);
+    }
+
+    /**
+     * Parks until an event is posted.
+     * @return the next event, or null if the thread was woken up without one (the state should be checked again).
+     */
+    public Event take() {
+        Event event = poll();
+        if (event != null) return event;
+        LockSupport.park(this);
+        return poll();
+    }
+
+    /**
+     * Parks until an event is posted or the thread is woken up, without taking the event.
+     */
+    public void await() {
+        LockSupport.park(this);
+    }
+
+    /**
+     * Parks until an event is posted or the deadline passes, without taking the event.
+     * @param deadline - the deadline (System.currentTimeMillis()).
+     */
+    public void awaitUntil(long deadline) {
+        LockSupport.parkUntil(this, deadline);
+    }
+
+    /**
+     * Called by the player thread only.
+     * @return true iff there is no event.
+     */
+    public boolean isEmpty() {
+        return putBack.isEmpty() && events.isEmpty();
+    }
+
+    /**
+     * Drops the clicks that were not taken yet, the other events are kept.
+     */
+    public void dropClicks() {
+        putBack.removeIf(event -> event.type == Type.click);
+        events.removeIf(event -> event.type == Type.click);
+    }
+}
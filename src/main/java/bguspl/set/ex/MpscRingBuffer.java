@@ -0,0 +1,89 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock-free queue for many producer threads and a single consumer thread.
+ * Producers claim a slot with a CAS on the tail and then publish the element in it; the consumer takes the elements in
+ * order and frees their slots. An element whose slot was claimed but not yet published is not visible to the
+ * consumer until it is published, so producers must wake the consumer after offering.
+ *
+ * @param <E> - the type of the elements.
+ */
+class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    /**
+     * The number of slots claimed by the producers.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The number of elements taken by the consumer (written by the consumer only).
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity - the minimal number of elements the buffer can hold (rounded up to a power of 2).
+     */
+    MpscRingBuffer(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element to the buffer (may be called by any thread).
+     * @return true iff the element was added, false if the buffer is full.
+     */
+    boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head > mask) return false;
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.lazySet((int) claimed & mask, element);
+        return true;
+    }
+
+    /**
+     * Takes the next element out of the buffer (called by the consumer thread only).
+     * @return the next element or null if there is no published element.
+     */
+    E poll() {
+        int index = (int) head & mask;
+        E element = slots.get(index);
+        if (element == null) return null;
+        slots.lazySet(index, null);
+        head = head + 1;
+        return element;
+    }
+
+    /**
+     * @return true iff no slot is claimed (called by the consumer thread only).
+     */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    /**
+     * @return the number of claimed slots.
+     */
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /**
+     * Passes the published elements to the action without taking them (for debugging).
+     */
+    void forEachPending(Consumer<E> action) {
+        for (long i = head, end = tail.get(); i < end; i++) {
+            E element = slots.get((int) i & mask);
+            if (element != null) action.accept(element);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * Pauses and resumes the player and AI threads of a game all at once.
+ * The dealer asks every player to pause and then waits for the last thread to arrive at the barrier, instead of
+ * waiting for the players one after the other. The phases alternate: in an even phase the threads arrive as they
+ * pause and the dealer waits for all of them, in an odd phase they wait until the dealer resumes them.
+ */
+class PauseBarrier {
+
+    /**
+     * The dealer is a party from the start, the threads of the players are registered before they start.
+     */
+    private final Phaser phaser = new Phaser(1);
+
+    /**
+     * The phase the dealer last resumed the threads in (-1 before the first resume). Used by the dealer thread only.
+     */
+    private int resumePhase = -1;
+
+    /**
+     * Registers threads that start paused.
+     * @param threads - the number of threads.
+     * @pre - the threads were not started yet.
+     */
+    void register(int threads) {
+        phaser.bulkRegister(threads);
+    }
+
+    /**
+     * Called by a player or AI thread when it has paused.
+     * Waits until the dealer resumes the players.
+     * @return false iff the game is over.
+     */
+    boolean pauseAndAwaitResume() {
+        phaser.arriveAndAwaitAdvance();
+        phaser.arriveAndAwaitAdvance();
+        return phaser.isTerminated() == false;
+    }
+
+    /**
+     * Called by the dealer after it asked the players to pause.
+     * Waits until all the threads have paused.
+     */
+    void awaitPaused() {
+        // some threads may not have arrived at the last resume yet. the dealer must not arrive twice in the same
+        // phase, the phaser counts arrivals and not parties
+        if (resumePhase >= 0) phaser.awaitAdvance(resumePhase);
+        phaser.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * Called by the dealer to resume all the threads at once. It does not wait for them.
+     * @pre - awaitPaused() returned since the last resume.
+     */
+    void resume() {
+        resumePhase = phaser.arrive();
+    }
+
+    /**
+     * Releases the paused threads for good, the game is over.
+     */
+    void terminate() {
+        phaser.forceTermination();
+    }
+}
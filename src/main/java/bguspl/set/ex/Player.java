@@ -1,8 +1,12 @@
 package bguspl.set.ex;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 import bguspl.set.ex.PlayerStates.*;
@@ -44,6 +48,11 @@ public class Player implements Runnable {
      */
     private LinkedList<Integer> placedTokens;
 
+    /**
+     * The version of every slot (see Table.getSlotVersion()) when the player placed its token on it.
+     */
+    private final int[] tokenVersions;
+
 
     /**
      * The id of the player (starting from 0).
@@ -58,7 +67,7 @@ public class Player implements Runnable {
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
 
     /**
      * True iff the player is human (not a computer player).
@@ -76,52 +85,43 @@ public class Player implements Runnable {
     private Dealer dealer;
     
     /**
-     * The clicks queue.
+     * The clicks, the valid claims of the other players and pause and terminate requests sent to the player thread.
      */
-    private volatile ConcurrentLinkedQueue<Integer> clickQueue;
-
-    /**
-     * The claim queue.
-     * @important needs to accessed using claimQueueAccess semaphore
-     */
-    private volatile ConcurrentLinkedQueue<Claim> claimQueue;
+    private final Mailbox mailbox;
 
     private volatile PlayerState state;
 
     /**
-     * Object for breaking wait() when game execution should resume
+     * The result of the last claim the player turned in
      */
-    private volatile Object executionListener;
+    private volatile CompletableFuture<Claim.Result> claimResult;
 
     /**
-     * Object for breaking wait() when waiting for general activity
+     * The barrier the dealer pauses and resumes the players of the game with
      */
-    private volatile Object activityListener;
+    private PauseBarrier pauseBarrier;
 
     /**
-     * Object for breaking wait() when waiting for claim result
+     * True if the dealer asked the player thread to pause and it has not paused yet.
+     * Unlike the state, the player thread cannot overwrite it by changing its state at the same time.
      */
-    private volatile Object claimListener;
+    private volatile boolean pauseRequested;
+
     /**
-     * Object for breaking wait() when the AI is waiting
+     * True if the dealer asked the AI thread to pause and it has not paused yet
      */
-    private volatile Object AIListener;
+    private volatile boolean aiPauseRequested;
 
     /**
-     * True if the AI thread is running
+     * The random stream of the AI, used by the AI thread only
      */
-    private volatile boolean AIRunning;
+    private final SplittableRandom random;
 
     /**
      * The remaining time to freeze the player
      */
     private long freezeRemainder;
 
-    /**
-     * The semaphore used to control access to the click queue.
-     */
-    private Semaphore claimQueueAccess;
-
     /**
      * All possible player states
      */
@@ -144,17 +144,11 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-
-        if(!human)AIRunning = true;
+        random = env.random.split();
 
         placedTokens = new LinkedList<>();
-        clickQueue = new ConcurrentLinkedQueue<>();
-        claimQueue = new ConcurrentLinkedQueue<>();
-        executionListener = new Object();
-        activityListener = new Object();
-        claimListener = new Object();
-        AIListener = new Object();
-        claimQueueAccess = new Semaphore(1,true);
+        tokenVersions = new int[env.config.tableSize];
+        mailbox = new Mailbox();
 
         playerStates = new PlayerState[7];
         playerStates[0] = new WaitingForActivity(this);
@@ -179,11 +173,17 @@ public class Player implements Runnable {
     public void run() {
         System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
         playerThread = Thread.currentThread();
+        mailbox.setConsumer(playerThread);
         if (!human) createArtificialIntelligence();
 
         //while the game is still running
         while (getState() != State.terminated) {
 
+            // a pause request wins over a state the player thread changed to right after the dealer set it
+            if(pauseRequested & getState() != State.paused & getState() != State.terminated){
+                setState(State.pausingExecution);
+            }
+
             // This runs the current state's main method.
             // When the state is changed, the state's main method will return here
             // and the new state's main method will be called.
@@ -202,7 +202,7 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // note: this is a very secretive AI.... SHHH!
-        aiThread = new Thread(new AI(), "computer-" + id);
+        aiThread = dealer.newThread(new AI(), "computer-" + id);
         aiThread.start();
     }
 
@@ -211,52 +211,67 @@ public class Player implements Runnable {
     //===========================================================
 
     /**
-     * Called when the dealer wants to notify the player of a new claim.
+     * Called when the dealer wants to notify the player of a valid claim of another player.
+     * The player learns about its own claims from their results (see setClaimResult).
      * If the player is waiting for a claim or waiting for key presses,
-     * the claim is added to the claim queue.
+     * the claim is posted to the player's mailbox.
      * @param claim
      */
     public void notifyClaim(Claim claim){
+        notifyClaims(Collections.singletonList(claim));
+    }
+
+    /**
+     * Called when the dealer wants to notify the player of several valid claims of other players at once.
+     * If the player is waiting for a claim or waiting for key presses,
+     * the claims are posted to the player's mailbox in order and the player is woken up once.
+     * @param claims
+     */
+    public void notifyClaims(List<Claim> claims){
 
         State state = getState();
 
 
         // we allow the player to receive a claim only if he is waiting for a claim or waiting for key presses
         if(state == State.waitingForActivity | state == State.waitingForClaimResult | state == State.turningInClaim){
-            claimQueueAccess.acquireUninterruptibly();
-            claimQueue.add(claim);
-            claimQueueAccess.release();
-            synchronized(claimListener){claimListener.notifyAll();}
+            mailbox.postClaims(claims);
         }
     }
 
     /**
-     * Pauses the player's ability to interact with the game
+     * Registers the player thread and the AI thread (if any) with the barrier the dealer pauses them with.
+     * The threads start paused.
+     * @pre - the threads were not started yet.
+     */
+    void usePauseBarrier(PauseBarrier pauseBarrier){
+        this.pauseBarrier = pauseBarrier;
+        pauseBarrier.register(human ? 1 : 2);
+    }
+
+    /**
+     * Asks the player to pause its ability to interact with the game. It does not wait for the player to pause,
+     * the threads of the player arrive at the pause barrier when they have paused.
      */
     public void pause(){
+        pauseRequested = true;
+        aiPauseRequested = human == false;
+        setState(State.pausingExecution);
 
         // here we want to push the player thread into a waiting state
-        // so we are gonna wake him up from every possible waiting state
-
-        int tries = 0;
-        do {
-            if(tries++ % 10 == 0) setState(State.pausingExecution);
-            synchronized(this){this.notifyAll();}
-            synchronized(AIListener){AIListener.notifyAll();}
-            synchronized(activityListener){activityListener.notifyAll();}
-            synchronized(claimListener){claimListener.notifyAll();}
-            try{Thread.sleep(10);}catch(InterruptedException ignored){}
-        }while(getState() != State.paused | AIRunning);
+        // so we are gonna wake him and the AI up from whatever they are waiting for
+        mailbox.postPause();
+        wakeAI();
     }
 
     /**
-     * Resumes the player's ability to interact with the game
+     * Called by the player thread when it has paused.
+     * Waits until the dealer resumes the players.
+     * @return false iff the game is over.
      */
-    public void resume(){
-        while(AIRunning != false | getState() != State.paused){
-            try{Thread.sleep(10);}catch(InterruptedException ignored){}
-        }
-        synchronized(executionListener){executionListener.notifyAll();}
+    public boolean awaitResume(){
+        // the request is cleared before the thread arrives, the dealer asks again only after all the threads arrived
+        pauseRequested = false;
+        return pauseBarrier.pauseAndAwaitResume();
     }
 
     /**
@@ -267,8 +282,7 @@ public class Player implements Runnable {
     public void keyPressed(int slot) {
         if(human){
             if(getState() == State.waitingForActivity){
-                clickQueue.add(slot);
-                synchronized(activityListener){activityListener.notifyAll();}
+                mailbox.postClick(slot);
             }
         }       
     }
@@ -280,8 +294,7 @@ public class Player implements Runnable {
      */
     public void terminate() {
         setState(State.terminated);
-        synchronized(activityListener){activityListener.notifyAll();}
-        synchronized(executionListener){executionListener.notifyAll();}
+        mailbox.postTerminate();
         try{
             playerThread.join();
         }catch(InterruptedException ignored){};
@@ -294,19 +307,40 @@ public class Player implements Runnable {
     public int getScore() {return score;}
     public int incrementAndGetScore() {return ++score;}
     public State getState() {return state.stateName();}
-    public void setState(State state) {this.state = playerStates[state.ordinal()];}
+    public void setState(State state) {
+        this.state = playerStates[state.ordinal()];
+        // the AI waits for the player to be ready to accept key presses
+        if(state == State.waitingForActivity) wakeAI();
+    }
     public void setFreezeRemainder(long remainder) {this.freezeRemainder = remainder;}
     public long getFreezeRemainder() {return freezeRemainder;}
     public Env getEnv() {return env;}
     public Table getTable() {return table;}
     public LinkedList<Integer> getPlacedTokens() {return placedTokens;}
+    public int[] getTokenVersions() {return tokenVersions;}
     public Dealer getDealer() {return dealer;}
-    public ConcurrentLinkedQueue<Claim> getClaimQueue() {return claimQueue;}
-    public Semaphore getClaimQueueAccess() {return claimQueueAccess;}
-    public Object getActivityListener() {return activityListener;}
-    public Object getExecutionListener() {return executionListener;}
-    public Object getClaimListener() {return claimListener;}
-    public ConcurrentLinkedQueue<Integer> getClickQueue() {return clickQueue;}
+    public Mailbox getMailbox() {return mailbox;}
+    public CompletableFuture<Claim.Result> getClaimResult() {return claimResult;}
+
+    /**
+     * Sets the result of the claim the player turned in. The player thread is woken up when it is completed.
+     */
+    public void setClaimResult(CompletableFuture<Claim.Result> claimResult) {
+        this.claimResult = claimResult;
+        claimResult.thenRun(mailbox::wake);
+    }
+
+    /**
+     * Takes the result of the claim the player turned in, if the dealer published it. A result is taken only once, so
+     * it is applied once even if the player leaves the state that waits for it. Called by the player thread only.
+     * @return the result, or null if there is none or it was not published yet.
+     */
+    public Claim.Result takeClaimResult() {
+        CompletableFuture<Claim.Result> result = claimResult;
+        if(result == null || result.isDone() == false) return null;
+        claimResult = null;
+        return result.join();
+    }
 
      //===========================================================
     //                  debugging methods
@@ -320,13 +354,10 @@ public class Player implements Runnable {
         System.out.println("dumping player "+id+" data:");
             System.out.println("State: "+state);
             System.out.println("placedTokens: "+placedTokens);
-            System.out.println("claimQueue.isEmpty(): "+claimQueue.isEmpty());
-            System.out.println("claimQueue.size: "+claimQueue.size());
-            System.out.println("claimQueue: ");
-            for(Claim c : claimQueue)
-                System.out.println(c);
+            System.out.println("mailbox.isEmpty(): "+mailbox.isEmpty());
             System.out.println("remainingFreezeTime: "+freezeRemainder);
-            System.out.println("AIRunning: "+AIRunning);
+            System.out.println("pauseRequested: "+pauseRequested);
+            System.out.println("aiPauseRequested: "+aiPauseRequested);
             if(aiThread != null) System.out.println("aiThread.getState(): "+aiThread.getState());
             System.out.println("================================");
     }
@@ -336,20 +367,21 @@ public class Player implements Runnable {
      * Used for debugging.
      */
     public void nudge(){
-        synchronized(executionListener){executionListener.notifyAll();}
-        synchronized(activityListener){activityListener.notifyAll();}
-        synchronized(claimListener){claimListener.notifyAll();}
+        mailbox.wake();
+    }
+
+    /**
+     * Wakes the AI thread (if any) up from whatever it is waiting for.
+     */
+    private void wakeAI(){
+        Thread thread = aiThread;
+        if(thread != null) LockSupport.unpark(thread);
     }
 
     //===========================================================
     //                  AI class
     //===========================================================
 
-      /**
-     * The AI service
-     */
-    public static AISuperSecretIntelligenceService secretService;
-
     /**
      * This class is used to create a thread for the AI player.
      * The AI thread repeatedly generates key presses.........
@@ -362,28 +394,24 @@ public class Player implements Runnable {
             aiThread = Thread.currentThread();
 
             //wait until the game starts
-            try{
-                AIRunning = false;
-                synchronized(executionListener){
-                    executionListener.wait();
-                }
-            }catch(InterruptedException ignored){}
+            boolean running = pauseBarrier.pauseAndAwaitResume();
 
-            AIRunning = true; //AI is now running
-
-            while (getState() != State.terminated) {
+            while (running & getState() != State.terminated) {
 
                 
                 //wait until the player thread is waiting for activity and ready to accept key presses
-                while(getState() != State.waitingForActivity & getState() != State.pausingExecution){
-                    try{
-                        synchronized(AIListener){
-                            AIListener.wait(25);
-                        }
-                    }catch(InterruptedException ignored){}
+                // the player wakes the AI up when it changes to this state and when it is asked to pause
+                while(getState() != State.waitingForActivity & aiPauseRequested == false){
+                    LockSupport.park(this);
                 }
                 
-                Integer[] keysArray = secretService.getIntel(); //get the keys to press
+                Integer[] keysArray = secretService().getIntel(random); //get the keys to press
+
+                // there are too few cards on the table to press keys on, wait for the next cards
+                if(keysArray == null){
+                    sleepUnlessPausing(generateAIWaitTime());
+                    keysArray = new Integer[0];
+                }
 
                 // here we build the lists for the keys to press and remove the keys that are already pressed
                 // this is done so the AI doesn't waste key presses and time and generally behave more like a human
@@ -405,8 +433,7 @@ public class Player implements Runnable {
                 while(keysToPlace.isEmpty() == false & getState() == State.waitingForActivity){
 
                     // limit how fast the AI clicks buttons
-                    try{synchronized(AIListener){AIListener.wait(generateAIWaitTime());}
-                    } catch(InterruptedException ignored){}
+                    sleepUnlessPausing(generateAIWaitTime());
 
                     if(keysToRemove.isEmpty() == false){
                         keyPressed_AI(keysToRemove.remove(0));
@@ -418,34 +445,28 @@ public class Player implements Runnable {
 
                 //if the player is waiting, gather intel
                 while(getState() == State.waitingForClaimResult | getState() == State.turningInClaim){
-                    try{synchronized(AIListener){AIListener.wait(secretService.WAIT_BETWEEN_INTELLIGENCE_GATHERING);}
-                    } catch(InterruptedException ignored){}
-                    secretService.gatherIntel();
+                    sleepUnlessPausing(secretService().WAIT_BETWEEN_INTELLIGENCE_GATHERING);
+                    secretService().gatherIntel(random);
                 }
 
                 //if the game does not need to be paused, report the claim
-                if(getState() != State.pausingExecution & getState() !=State.paused){
+                if(aiPauseRequested == false & keysArray.length > 0){
                     if (currentScore < score)
-                        secretService.reportSetClaimed(keysArray);
-                    else secretService.sendIntel(keysArray,false); 
+                        secretService().reportSetClaimed(keysArray);
+                    else secretService().sendIntel(keysArray,false); 
                 }
 
                 //if the player is frozen, gather intel
                 while(getState() == State.frozen){
-                    try{synchronized(AIListener){AIListener.wait(secretService.WAIT_BETWEEN_INTELLIGENCE_GATHERING);}
-                    }catch(InterruptedException ignored){}
-                    secretService.gatherIntel();
+                    sleepUnlessPausing(secretService().WAIT_BETWEEN_INTELLIGENCE_GATHERING);
+                    secretService().gatherIntel(random);
                 }
 
-                //if the game needs to be paused, wait until it is unpaused
-                if(getState() == State.pausingExecution | getState() == State.paused){
-                    try{
-                        AIRunning = false; //AI is not running while game is paused
-                        synchronized(executionListener){
-                            executionListener.wait();
-                        }
-                    }catch(InterruptedException ignored){}
-                    if(getState() != State.paused) AIRunning = true;
+                //if the game needs to be paused, wait until it is resumed.
+                //the request is cleared before the thread arrives, the dealer asks again only after all the threads arrived
+                if(aiPauseRequested){
+                    aiPauseRequested = false;
+                    running = pauseBarrier.pauseAndAwaitResume();
                 }        
             }
             System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
@@ -459,19 +480,38 @@ public class Player implements Runnable {
          */
         private void keyPressed_AI(int slot) {
             if(getState() == State.waitingForActivity){
-                clickQueue.add(slot);
-                synchronized(activityListener){activityListener.notifyAll();}    
+                mailbox.postClick(slot);    
+            }
+        }
+
+        /**
+         * Waits for the given time, or until the player is asked to pause.
+         * Wakeups that are not a pause request (e.g. the player changing its state) do not cut the wait short.
+         * @param millis - the time to wait in milliseconds.
+         */
+        private void sleepUnlessPausing(long millis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            long remaining;
+            while(aiPauseRequested == false & (remaining = deadline - System.nanoTime()) > 0){
+                LockSupport.parkNanos(this, remaining);
             }
         }
 
+        /**
+         * @return the AI service of the current deal (every game has its own).
+         */
+        private AISuperSecretIntelligenceService secretService() {
+            return dealer.getSecretService();
+        }
+
         /**
          * Generates a random wait time between key presses for the AI.
          * @return the wait time in milliseconds.
          */
         private int generateAIWaitTime() {
-            return (int)(Math.random()*
-            (secretService.AI_WAIT_BETWEEN_KEY_PRESSES*(3.0/2.0) - secretService.AI_WAIT_BETWEEN_KEY_PRESSES/2.0)+
-            secretService.AI_WAIT_BETWEEN_KEY_PRESSES/2.0);
+            return (int)(random.nextDouble()*
+            (secretService().AI_WAIT_BETWEEN_KEY_PRESSES*(3.0/2.0) - secretService().AI_WAIT_BETWEEN_KEY_PRESSES/2.0)+
+            secretService().AI_WAIT_BETWEEN_KEY_PRESSES/2.0);
         }
     }
 }
@@ -1,29 +1,38 @@
 package bguspl.set.ex.PlayerStates;
 
 import bguspl.set.ex.Player;
+import bguspl.set.ex.TimerSchedule;
 import bguspl.set.ex.Player.State;
 
 public class Frozen extends PlayerState {
 
-    private static final int CLOCK_UPDATE_INTERVAL = 250;
+    /**
+     * The deadlines of the freeze timer (it has no warning and no padding).
+     */
+    private final TimerSchedule timer;
 
     public Frozen(Player player) {
         super(player);
+        timer = new TimerSchedule(0, 0, 0);
     }
 
     @Override
     public void run() {
 
         //set the timer to the remainder of the freeze time
-        long freezeUntil = System.currentTimeMillis()+player.getFreezeRemainder();
-        updateTimerDisplay(freezeUntil-System.currentTimeMillis());
-
-        //main freeze timer loop
-        while(stillThisState() & freezeUntil >= System.currentTimeMillis() ){
-            try{
-                synchronized(player){player.wait(CLOCK_UPDATE_INTERVAL);}
-            } catch (InterruptedException ignored){}
-            updateTimerDisplay(freezeUntil-System.currentTimeMillis()); 
+        long now = System.currentTimeMillis();
+        long freezeUntil = now+player.getFreezeRemainder();
+        timer.countdownTo(freezeUntil, now);
+
+        //main freeze timer loop, it wakes up only when the displayed seconds change or the freeze is over
+        while(stillThisState() & freezeUntil > now){
+            if(timer.tickDue(now)){
+                updateTimerDisplay(timer.displayed(now));
+                timer.ticked(now);
+            }
+            // a pause or terminate request wakes the player up, the events are left for the next states
+            if(timer.nextDeadline() > now) mailbox.awaitUntil(timer.nextDeadline());
+            now = System.currentTimeMillis();
         }
 
         //update the remaining freeze time
@@ -1,5 +1,6 @@
 package bguspl.set.ex.PlayerStates;
 
+import bguspl.set.ex.Claim;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Player.State;
 
@@ -12,6 +13,10 @@ public class PausingExecution extends PlayerState {
     @Override
     public void run() {
 
+        // the dealer may have published a point for the player's claim right before it asked the player to pause,
+        // while the player was still turning the claim in
+        if(player.takeClaimResult() == Claim.Result.valid) scorePoint();
+
         // cleaning up before pausing the player
         clearAllPlacedTokens();
         clearClickQueue();
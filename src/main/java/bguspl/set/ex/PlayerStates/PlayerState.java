@@ -1,12 +1,10 @@
 package bguspl.set.ex.PlayerStates;
 
 import java.util.LinkedList;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
 
 import bguspl.set.Env;
-import bguspl.set.ex.Claim;
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Mailbox;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Player.State;
 import bguspl.set.ex.Table;
@@ -32,6 +30,11 @@ public abstract class PlayerState {
      * The player's currently placed tokens.
      */
     protected LinkedList<Integer> placedTokens;
+
+    /**
+     * The version of every slot when the player placed its token on it.
+     */
+    protected int[] tokenVersions;
     
     /**
      * The game's dealer
@@ -39,20 +42,14 @@ public abstract class PlayerState {
     protected Dealer dealer;
 
     /**
-     * The claim queue.
-     * @important needs to accessed using claimQueueAccess semaphore
-     */
-    protected volatile ConcurrentLinkedQueue<Claim> claimQueue;
-    
-    /**
-     * The semaphore used to control access to the click queue.
+     * The clicks, the valid claims of the other players and pause and terminate requests sent to the player thread.
      */
-    protected Semaphore claimQueueAccess;
+    protected final Mailbox mailbox;
 
-        /**
-     * The clicks queue.
+    /**
+     * The number of cards in a set.
      */
-    protected volatile ConcurrentLinkedQueue<Integer> clickQueue;
+    protected final int setSize;
 
     /**
      *  initializes everything to null
@@ -62,10 +59,10 @@ public abstract class PlayerState {
         this.env = null;
         this.table = null;
         this.placedTokens = null;
+        this.tokenVersions = null;
         this.dealer = null;
-        this.claimQueue = null;
-        this.claimQueueAccess = null;
-        this.clickQueue = null;
+        this.mailbox = null;
+        this.setSize = 0;
     }
 
     /**
@@ -76,10 +73,10 @@ public abstract class PlayerState {
         this.env = player.getEnv();
         this.table = player.getTable();
         this.placedTokens = player.getPlacedTokens();
+        this.tokenVersions = player.getTokenVersions();
         this.dealer = player.getDealer();
-        this.claimQueue = player.getClaimQueue();
-        this.claimQueueAccess = player.getClaimQueueAccess();
-        this.clickQueue = player.getClickQueue();
+        this.mailbox = player.getMailbox();
+        this.setSize = env.util.setSize();
     }
 
     public abstract void run();
@@ -115,7 +112,21 @@ public abstract class PlayerState {
      */
     protected void clearPlacedToken(Integer slot) {
         table.removeToken(player.id, slot);
-        placedTokens.remove(slot);
+        synchronized(placedTokens){
+            placedTokens.remove(slot);
+        }
+    }
+
+    /**
+     * Clears the placed tokens whose slots changed since the tokens were placed.
+     * @post - every token left is on the card it was placed on.
+     */
+    protected void clearChangedTokens() {
+        for(Integer slot : placedTokens.toArray(new Integer[0])){
+            if(table.getSlotVersion(slot) != tokenVersions[slot]){
+                clearPlacedToken(slot);
+            }
+        }
     }
 
     /**
@@ -127,17 +138,25 @@ public abstract class PlayerState {
         while(placedTokens.isEmpty() == false){
             Integer token = placedTokens.peekFirst();
             table.removeToken(player.id, token);
-            placedTokens.removeFirst();
+            synchronized(placedTokens){
+                placedTokens.removeFirst();
+            }
         }    
     }
 
     /**
-     * Clears the click queue.
-     * @post - the click queue is cleared.
+     * Awards the player a point for a valid claim.
+     * @post - the player's score is increased by 1 and updated in the ui.
+     */
+    protected void scorePoint() {
+        env.ui.setScore(player.id, player.incrementAndGetScore());
+    }
+
+    /**
+     * Clears the clicks that were not handled yet.
+     * @post - the mailbox holds no clicks.
      */
     protected void clearClickQueue() {
-        while(clickQueue.isEmpty() == false){
-            clickQueue.remove();
-        }
+        mailbox.dropClicks();
     }
 }
@@ -1,20 +1,14 @@
 package bguspl.set.ex.PlayerStates;
 
 import bguspl.set.ex.Claim;
-import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Mailbox;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Player.State;
 
 public class WaitingForActivity extends PlayerState {
 
-    /**
-     * Object for breaking wait() when waiting for general activity
-     */
-    private volatile Object activityListener;
-
     public WaitingForActivity(Player player) {
         super(player);
-        activityListener = player.getActivityListener();
     }
 
     @Override
@@ -22,22 +16,22 @@ public class WaitingForActivity extends PlayerState {
 
         while(stillThisState()){
 
-            try{
-                //wait for a click
-                synchronized(activityListener){
-                    activityListener.wait();
-                }
-            }catch(InterruptedException ignored){}
-            
-            //if there is a click to be processed
-            while(clickQueue.isEmpty() == false & stillThisState()){
-                Integer key = clickQueue.remove();
-                placeOrRemoveToken(key);
-            }
+            //wait for a click or a claim
+            Mailbox.Event event = mailbox.take();
+            if(event == null) continue;
 
-            //if a claim was notified, handle it
-            if(claimQueue.isEmpty() == false & stillThisState()){
-                handleNotifiedClaim();         
+            switch(event.type){
+                case click:{
+                    if(stillThisState()) placeOrRemoveToken(event.slot);
+                    break;
+                }
+                case claim:{
+                    // a claim that arrives after the player left this state is for the next state to handle
+                    if(stillThisState()) handleNotifiedClaim(event.claim);
+                    else mailbox.putBack(event);
+                    break;
+                }
+                default: break; // a pause or terminate request only wakes the player up, the state was changed already
             }
         }
     }
@@ -55,26 +49,23 @@ public class WaitingForActivity extends PlayerState {
         if(placedTokens.contains(slot) == false){
 
             // this limits the number of tokens that can be placed to the number of cards in a set
-            if(placedTokens.size() == Dealer.SET_SIZE){
+            if(placedTokens.size() == setSize){
                 return;
             }
  
-            // we try to place a token in slot. this could fail due to the slot being null during the time
-            // when a card is removed and another card is instered in the slot. so, we try a few times.
-            boolean insertState = false;
-            int tries = 0;
-            while(insertState == false & tries <=5 & stillThisState()){
-                insertState = table.placeToken(player.id, slot);
-                tries++;
-                try{Thread.sleep(10);}catch(InterruptedException ignored){}
-            }
-            //================================================================================================|
+            // the token is not placed if the slot is empty or its card is not shown yet, the click is ignored then.
+            // the version is read before the token is placed, so a card replaced in between makes the claim stale
+            tokenVersions[slot] = table.getSlotVersion(slot);
+            boolean insertState = table.placeToken(player.id, slot);
 
             // if the token was placed, add it to the list of placed tokens.
             // if the player has placed enough tokens, claim the set.
             if(insertState){
-                placedTokens.addLast(slot);
-                if(placedTokens.size() == Dealer.SET_SIZE) {
+                // the AI thread reads the tokens while it holds the lock of the list
+                synchronized(placedTokens){
+                    placedTokens.addLast(slot);
+                }
+                if(placedTokens.size() == setSize) {
                     changeToState(State.turningInClaim);
                     clearClickQueue();
                 } 
@@ -87,26 +78,14 @@ public class WaitingForActivity extends PlayerState {
     }
     
     /**
-     * @pre - The claimQueue is not empty.
-     * @post - The claimQueue is empty.
-     * @post - The player has removed all cards that were already claimed by another player.
-     *  and if so, changed to the waitingForActivity state if it was still in the turningInClaim state.
+     * @post - The player has removed its tokens from the cards of a claim of another player.
      */
-    private void handleNotifiedClaim() {
-
-        claimQueueAccess.acquireUninterruptibly();
-        while(claimQueue.isEmpty() == false){
-            Claim claim = claimQueue.remove();
-
-            // in this state the only thing that can be notified is a claim
-            // that a different player has made, thus no need to check if it is our claim
-            for(Integer card : claim.cards){
-                if(placedTokens.contains(card)){
-                    clearPlacedToken(card);
-                }
-            }            
+    private void handleNotifiedClaim(Claim claim) {
+        for(Integer card : claim.cards){
+            if(placedTokens.contains(card)){
+                clearPlacedToken(card);
+            }
         }
-        claimQueueAccess.release();
     }
 
     @Override
@@ -1,97 +1,69 @@
 package bguspl.set.ex.PlayerStates;
 
+import java.util.concurrent.CompletableFuture;
+
 import bguspl.set.ex.Claim;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Player.State;
 
 public class WaitingForClaimResult extends PlayerState {
 
-    private static final int WAIT_FOR_CLAIM_MAX_TRIES = 10;
-    private volatile Object claimListener;
-
     public WaitingForClaimResult(Player player) {
         super(player);
-        claimListener = player.getClaimListener();
     }
 
     /**
-     * Waits for a claim result to be notified to the player.
+     * Waits for the result of the player's claim.
+     * The claims of the other players are left in the mailbox for the next state.
      */
     @Override
     public void run() {
-        //number of tries to wait for claim result
-        int tries = 0;
-        while(stillThisState() & tries < WAIT_FOR_CLAIM_MAX_TRIES){  
-            try{
-                //wait for claim result
-                synchronized(claimListener){claimListener.wait(generateWaitingTime());}
-            }catch(InterruptedException ignored){} 
-
-            //if a claim was notified, handle it
-            if(claimQueue.isEmpty() == false & stillThisState()){
-                handleNotifiedClaim();
-            }else  tries++; //if no claim was notified, increment tries
+        CompletableFuture<Claim.Result> result = player.getClaimResult();
+
+        // the dealer completes the result of every claim exactly once, even if the game is paused before it rules on
+        // it, so the player waits for it without a timeout.
+        // the player is woken up when the result is completed or it is asked to pause
+        while(stillThisState() & result.isDone() == false){
+            mailbox.await();
         }
 
-        // disaster recovery if claim result got lost due to a limitation in java's concurrent data structures.
-        // this is a very rare case, but it can happen.
-        // this just makes sure that the player does not get stuck in this state.
-        // realistically, it just sends the player back to the previous state to try again.
-        if(tries >= WAIT_FOR_CLAIM_MAX_TRIES & stillThisState()){
-            changeToState(State.turningInClaim);
-        }   
+        // clicks are dropped in this state
+        clearClickQueue();
+
+        // the result is applied also if the player was asked to pause right after the dealer published it,
+        // only the changes of state depend on the player still waiting for it
+        Claim.Result ruling = player.takeClaimResult();
+        if(ruling != null){
+            handleClaimResult(ruling);
+        }
     }
 
     /**
-     * Handle a claim that was notified to the player.
-     * @post - the player's score is increased by 1 if the claim was valid.
-     * @post - the player's state is changed to frozen if the claim was the player's.
-     * @post - the player's state is changed to waitingForActivity if some of the player's placed tokens were cleared.
+     * Handles the result of the player's claim.
+     * @post - the player's score is increased by 1 if the claim was valid, even if the player is pausing.
+     * @post - the player's state is changed to frozen if the claim was valid or not a set.
+     * @post - the player's state is changed to waitingForActivity if the claim was rejected.
+     * @post - the player's state is changed to turningInClaim if the claim was not turned in.
      */
-    private void handleNotifiedClaim() {
-
-        // this variable is used to store the action that should be performed after the claim is handled
-        // the base value is 0, which means no action should be performed
-        int action = 0;
-
-        boolean cardsRemoved = false;
-        claimQueueAccess.acquireUninterruptibly();
-        while(claimQueue.isEmpty() == false){
-            Claim claim = claimQueue.remove();
-
-            // this part is for the case when the player is the claimer
-            if(claim.claimer == player){
-                action = claim.validSet ? 1:-1;
+    private void handleClaimResult(Claim.Result result) {
+        switch(result){
+            case queueFull:{
+                // the dealer did not see the claim, so it is turned in again
+                if(stillThisState()) changeToState(State.turningInClaim);
                 break;
             }
-            else{ 
-                // this part is for the case when the player is not the claimer
-                if(claim.validSet){
-                    for(Integer card : claim.cards){
-                        if(placedTokens.contains(card)){
-                            clearPlacedToken(card);
-                            cardsRemoved = true;
-                        }
-                    }
-                }            
-            }        
-        }
-        claimQueueAccess.release();
-
-        //if the player's placed tokens were cleared, change state to waitingForActivity
-        if(cardsRemoved & stillThisState()) changeToState(State.waitingForActivity);
-
-        // here we handle the action that was decided in the previous part
-        switch(action){
-            case 0 : break;
-            case 1:{
+            case valid:{
                 point();
                 break;
             } 
-            case -1: {
+            case notASet: {
                 penalty();
                 break;
             }
+            default: {
+                staleClaim();
+                break;
+            }
         }
     }
 
@@ -101,7 +73,7 @@ public class WaitingForClaimResult extends PlayerState {
      * @post - the player's score is updated in the ui.
      */
     private void point() {
-        env.ui.setScore(player.id, player.incrementAndGetScore());
+        scorePoint();
 
         // if the player claimed a valid set we want to clear all of his placed tokens
         clearAllPlacedTokens();
@@ -128,16 +100,12 @@ public class WaitingForClaimResult extends PlayerState {
     }
 
     /**
-     * Generates a waiting time for the player to wait for a claim result.
-     * @return  1 if the player is still in this state and the claim queue is not empty.
-     *   100 if the player is still in this state and the claim queue is empty.
-     *   1 if the player is no longer in this state.
+     * Handle a claim that was rejected because its slots changed before the dealer ruled on it.
+     * @post - the player's tokens on the changed slots are cleared and the player can place tokens again.
      */
-    private long generateWaitingTime() {  
-        if(stillThisState()){
-            if(claimQueue.isEmpty() == false) return 1;
-            else return 100;
-        }else return 1;
+    private void staleClaim() {
+        clearChangedTokens();
+        if(stillThisState()) changeToState(State.waitingForActivity);
     }
 
     @Override
@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import bguspl.set.Util;
+
+/**
+ * Tracks whether a legal set is left among the cards that are still in the game (in the deck or on the table).
+ * Reshuffles only move cards between the deck and the table, and cards leave the game only when a claimed set is
+ * removed. The tracker therefore keeps one set of cards in the game as a witness and searches for a new witness only
+ * when a card of the current one leaves the game.
+ * Used by the dealer thread only.
+ */
+class RemainingSets {
+
+    private final Util util;
+
+    /**
+     * The cards that are still in the game, in no particular order, in cards[0] ... cards[length - 1].
+     */
+    private final int[] cards;
+    private int length;
+
+    /**
+     * The index of every card in cards (-1 if it left the game).
+     */
+    private final int[] positions;
+
+    /**
+     * A set of cards that are still in the game (valid only if witnessSearched and witnessFound).
+     */
+    private int[] witness;
+    private boolean witnessSearched;
+    private boolean witnessFound;
+
+    /**
+     * @param util     - the utilities to search for sets with.
+     * @param deckSize - the number of cards in the game, all of them are in the game at first.
+     */
+    RemainingSets(Util util, int deckSize) {
+        this.util = util;
+        cards = new int[deckSize];
+        positions = new int[deckSize];
+        for (int card = 0; card < deckSize; card++) {
+            cards[card] = card;
+            positions[card] = card;
+        }
+        length = deckSize;
+    }
+
+    /**
+     * Removes a card from the game.
+     * @param card - the card id.
+     */
+    void remove(int card) {
+        int position = positions[card];
+        if (position < 0) return;
+
+        // move the last card into the hole
+        int last = cards[--length];
+        cards[position] = last;
+        positions[last] = position;
+        positions[card] = -1;
+
+        if (witnessFound) {
+            for (int witnessCard : witness) {
+                if (witnessCard == card) {
+                    witnessSearched = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true iff there is a legal set among the cards that are still in the game.
+     */
+    boolean hasSet() {
+        if (!witnessSearched) {
+            witnessFound = !util.forEachSet(cards, length, set -> {
+                witness = set.clone();
+                return false;
+            });
+            witnessSearched = true;
+        }
+        return witnessFound;
+    }
+}
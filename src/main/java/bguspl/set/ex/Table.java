@@ -3,10 +3,15 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.stream.Collectors;
 
 /**
@@ -41,6 +46,46 @@ public class Table {
      */
     private LinkedList<Integer> cardsPlacementSlotsOrder;
 
+    /**
+     * The number of cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The legal sets among the cards on the table (each one sorted), updated whenever a card is placed or removed.
+     * Readers iterate over a snapshot, so the dealer can update it while players and hints read it.
+     */
+    private final List<int[]> sets;
+
+    /**
+     * A buffer for the other cards on the table while the sets of a placed card are indexed.
+     * Cards are placed by the dealer thread only, so it is not shared.
+     */
+    private final int[] otherCards;
+
+    /**
+     * A version stamp per slot, advanced whenever a card is placed in the slot or removed from it.
+     * Players read the stamps of the slots they place tokens on, so the dealer can tell if a claim is still about the
+     * cards the player saw without rejecting claims on other slots.
+     */
+    private final AtomicIntegerArray slotVersions;
+
+    /**
+     * The version stamp of every slot that the user interface shows. The user interface lags the table by the table
+     * delay, so a token is placed only on a card that is shown already.
+     */
+    private final AtomicIntegerArray shownVersions;
+
+    /**
+     * Shows the changes made to the table on the user interface at the pace of the table delay.
+     */
+    private final TableAnimator animator;
+
+    /**
+     * The random stream for the order of the slots, used by the dealer thread only.
+     */
+    private final SplittableRandom random;
+
     /**
      * Constructor for testing.
      *
@@ -49,14 +94,31 @@ public class Table {
      * @param cardToSlot - mapping between a card and the slot it is in (null if none).
      */
     public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+        this(env, slotToCard, cardToSlot, null);
+    }
+
+    private Table(Env env, Integer[] slotToCard, Integer[] cardToSlot, ScheduledExecutorService animationScheduler) {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        random = env.random.split();
         cardsPlacementSlotsOrder = new LinkedList<>();
         for (int i = 0; i < slotToCard.length; i++) {
             cardsPlacementSlotsOrder.add(i);
         }
-        Collections.shuffle(cardsPlacementSlotsOrder);
+        shuffleSlotsOrder();
+        setSize = env.util.setSize();
+        sets = new CopyOnWriteArrayList<>();
+        otherCards = new int[slotToCard.length];
+        slotVersions = new AtomicIntegerArray(slotToCard.length);
+        shownVersions = new AtomicIntegerArray(slotToCard.length);
+        animator = animationScheduler == null ? new TableAnimator(env.config.tableDelayMillis)
+                : new TableAnimator(env.config.tableDelayMillis, animationScheduler);
+        for (int i = 0; i < slotToCard.length; i++) {
+            if (slotToCard[i] != null) {
+                indexSetsOf(i, i);
+            }
+        }
     }
 
     /**
@@ -68,12 +130,21 @@ public class Table {
         this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
     }
 
+    /**
+     * Constructor for hosted games, their tables show the changes on a shared thread.
+     *
+     * @param env                - the game environment objects.
+     * @param animationScheduler - a scheduler with a single thread, shared with the tables of the other games.
+     */
+    public Table(Env env, ScheduledExecutorService animationScheduler) {
+        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize], animationScheduler);
+    }
+
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        sets.forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -90,14 +161,18 @@ public class Table {
         placeCard(cardToPlace, findEmptySlot());
     }
     public void placeCard(int cardToPlace, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-        
+        if (slotToCard[slot] != null) {
+            unindexSetsOf(slotToCard[slot]);
+        }
         cardToSlot[cardToPlace] = slot;
         slotToCard[slot] = cardToPlace;
+        int version = slotVersions.incrementAndGet(slot);
+        indexSetsOf(slot, slotToCard.length);
 
-        env.ui.placeCard(cardToPlace, slot);
+        animator.showCard(() -> {
+            env.ui.placeCard(cardToPlace, slot);
+            shownVersions.set(slot, version);
+        });
         cardCount++;
     }
 
@@ -121,13 +196,15 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
         if(slotToCard[slot]!= null){
+            unindexSetsOf(slotToCard[slot]);
             cardToSlot[slotToCard[slot]] = null;
             slotToCard[slot] = null;
-            env.ui.removeCard(slot);
+            int version = slotVersions.incrementAndGet(slot);
+            animator.showCard(() -> {
+                env.ui.removeCard(slot);
+                shownVersions.set(slot, version);
+            });
             cardCount--;
         }
     }
@@ -136,11 +213,11 @@ public class Table {
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
-     * @returns true if action was successful and false otherwise
+     * @returns true if action was successful and false otherwise (the slot is empty or its card is not shown yet)
      */
     public boolean placeToken(int player, int slot) {       
-        if(slotToCard[slot] != null){
-            env.ui.placeToken(player, slot);
+        if(slotToCard[slot] != null && isSlotShown(slot)){
+            animator.show(() -> env.ui.placeToken(player, slot));
             return true;
         }else return false;
     }
@@ -153,7 +230,23 @@ public class Table {
      * @returns true if action was successful and false otherwise
      */
     public void removeToken(int player, int slot) {
-        env.ui.removeToken(player, slot);
+        animator.show(() -> env.ui.removeToken(player, slot));
+    }
+
+    /**
+     * @return the time at which the user interface shows the last change made to the table
+     *  (System.currentTimeMillis()). Tokens are placed only on cards that are shown, so a turn starts then.
+     */
+    public long shownAt() {
+        return animator.shownAt();
+    }
+
+    /**
+     * Stops showing the changes made to the table, after the user interface has shown all of them.
+     * @param dropPending - true to drop the changes that were not shown yet (when the game was terminated).
+     */
+    public void stopAnimation(boolean dropPending) {
+        animator.stop(dropPending);
     }
 
     /**
@@ -167,7 +260,7 @@ public class Table {
         // to get a random order of cards removal
         cardsPlacementSlotsOrder = Arrays.stream(slotToCard)
         .filter(Objects::nonNull).map(i->cardToSlot[i]).collect(Collectors.toCollection(LinkedList::new));
-        Collections.shuffle(cardsPlacementSlotsOrder);
+        shuffleSlotsOrder();
 
         // the cards that were on the table, this will be returned to the caller
         Integer[] cardsRemoved = new Integer[getCurrentSize()]; 
@@ -200,9 +293,126 @@ public class Table {
      * Returns the number of possible sets on the table.
      */
     public int getSetCount() {
-        Integer[] cardsOnTable = slotToCard.clone();
-        List<Integer> tableCards = Arrays.stream(cardsOnTable).filter(Objects::nonNull).collect(Collectors.toList());
-        return env.util.findSets(tableCards, 1).size();
+        return setCount();
+    }
+
+    /**
+     * @return true iff there is a legal set on the table
+     */
+    public boolean hasSet() {
+        return !sets.isEmpty();
+    }
+
+    /**
+     * @return the number of legal sets on the table
+     */
+    public int setCount() {
+        return sets.size();
+    }
+
+    /**
+     * Returns an iterator over the legal sets on the table, as they were when it was created.
+     * Each set is an array of card ids in ascending order and must not be modified.
+     */
+    public Iterator<int[]> getSets() {
+        return sets.iterator();
+    }
+
+    /**
+     * Adds the sets that the card in the given slot forms with the cards in the lower slots (or in all
+     * the slots) to the set index.
+     * @param slot - the slot of the card.
+     * @param slotsIndexed - the number of slots whose cards are already in the index.
+     */
+    private void indexSetsOf(int slot, int slotsIndexed) {
+        int card = slotToCard[slot];
+        int[] others = otherCards;
+        int length = 0;
+        for (int i = 0; i < slotsIndexed; i++) {
+            if (i != slot && slotToCard[i] != null) {
+                others[length++] = slotToCard[i];
+            }
+        }
+        if (length == 0) return;
+
+        if (setSize == 3 && env.util.completeSet(others[0], card) >= 0) {
+            // every other card has exactly one card that completes it to a set with the new card
+            for (int i = 0; i < length; i++) {
+                int completion = env.util.completeSet(others[i], card);
+                Integer completionSlot = completion >= 0 ? cardToSlot[completion] : null;
+                if (completion > others[i] && completion != card && completionSlot != null
+                        && completionSlot < slotsIndexed && completionSlot != slot
+                        && Objects.equals(slotToCard[completionSlot], completion)) {
+                    addSet(others[i], completion, card);
+                }
+            }
+        } else if (setSize == 3) {
+            for (int i = 0; i < length; i++) {
+                for (int j = i + 1; j < length; j++) {
+                    if (env.util.testSet(others[i], others[j], card)) {
+                        addSet(others[i], others[j], card);
+                    }
+                }
+            }
+        } else {
+            // larger sets are rare enough to search the whole table for the sets that contain the card
+            others[length++] = card;
+            env.util.forEachSet(others, length, set -> {
+                for (int setCard : set) {
+                    if (setCard == card) {
+                        sets.add(set.clone());
+                        break;
+                    }
+                }
+                return true;
+            });
+        }
+    }
+
+    private void addSet(int card1, int card2, int card3) {
+        int[] set = {card1, card2, card3};
+        Arrays.sort(set);
+        sets.add(set);
+    }
+
+    /**
+     * Removes the sets that contain the given card from the set index.
+     */
+    private void unindexSetsOf(int card) {
+        sets.removeIf(set -> {
+            for (int setCard : set) {
+                if (setCard == card) return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @param slot - slot number
+     * @return the version stamp of the slot, it changes whenever the card in the slot changes
+     */
+    public int getSlotVersion(int slot) {
+        return slotVersions.get(slot);
+    }
+
+    /**
+     * @param slot - slot number
+     * @return true iff the user interface shows the card that is in the slot now
+     */
+    public boolean isSlotShown(int slot) {
+        return shownVersions.get(slot) == slotVersions.get(slot);
+    }
+
+    /**
+     * @param slots    - slot numbers
+     * @param versions - the version stamps of the slots, as read by getSlotVersion()
+     * @return true iff the cards in all of the slots are the ones that were there when the stamps were read
+     */
+    public boolean slotsUnchanged(Integer[] slots, int[] versions) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slotVersions.get(slots[i]) != versions[i]) return false;
+        }
+        return true;
     }
 
     /**
@@ -226,22 +436,44 @@ public class Table {
      * according to the last call to clearTable()
      */
     public LinkedList<Integer> getCardsPlacementSlotsOrder() {
-        Collections.shuffle(cardsPlacementSlotsOrder);
+        shuffleSlotsOrder();
         return cardsPlacementSlotsOrder;
     }
+
+    /**
+     * Puts the slots in cardsPlacementSlotsOrder in a random order (Fisher-Yates).
+     */
+    private void shuffleSlotsOrder() {
+        Integer[] slots = cardsPlacementSlotsOrder.toArray(new Integer[0]);
+        for (int i = slots.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+        }
+        ListIterator<Integer> iterator = cardsPlacementSlotsOrder.listIterator();
+        for (Integer slot : slots) {
+            iterator.next();
+            iterator.set(slot);
+        }
+    }
     
     /**
-     * Returns a list of cards that are currently on the table
+     * Copies the cards that are currently on the table into an array
      * without removing them from the table
+     * @param cards - the array to copy the cards into.
+     * @param from - the index in the array of the first card.
+     * @return - the number of cards copied.
      */
-    public LinkedList<Integer> getCardsOnTable(){
-        LinkedList<Integer> cardsOnTable = new LinkedList<>();
+    public int getCardsOnTable(int[] cards, int from){
+        int count = 0;
         for (int i = 0; i < slotToCard.length; i++) {
-            if (slotToCard[i] != null) {
-                cardsOnTable.add(slotToCard[i]);
+            Integer card = slotToCard[i];
+            if (card != null) {
+                cards[from + count++] = card;
             }
         }
-        return cardsOnTable;
+        return count;
     }
 
 }
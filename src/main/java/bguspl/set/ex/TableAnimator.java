@@ -0,0 +1,189 @@
+package bguspl.set.ex;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shows the changes made to the table on the user interface at the pace of the table delay.
+ * The table itself changes at once and only showing the change is scheduled here, so the dealer never sleeps while it
+ * places or removes cards. A card is shown a table delay after the previous card and any other change right after the
+ * change before it, so the user interface gets the changes in the order they were made.
+ * The scheduler thread is only started if the table delay is positive, otherwise changes are shown at once.
+ * The tables of hosted games share a single scheduler thread instead of starting one each.
+ */
+class TableAnimator {
+
+    private final long delayMillis;
+
+    /**
+     * The time the animation waits for the changes to be shown after they are due, when it is stopped.
+     */
+    private static final long STOP_GRACE_MILLIS = 1000;
+
+    /**
+     * The thread that shows the changes (null if there is no delay).
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * True iff the scheduler is shared with other tables, it is not shut down when this animation stops.
+     */
+    private final boolean sharedScheduler;
+
+    /**
+     * The time at which the last change scheduled is shown (System.nanoTime()).
+     */
+    private long lastShown;
+
+    /**
+     * The changes that were not shown yet, in the order they were made.
+     */
+    private final ArrayDeque<Change> pending = new ArrayDeque<>();
+
+    /**
+     * The last change scheduled (null if none was).
+     */
+    private ScheduledFuture<?> lastChange;
+
+    /**
+     * True iff the animation was stopped, no more changes are scheduled.
+     */
+    private boolean stopped;
+
+    /**
+     * True iff the changes that were not shown yet are dropped.
+     */
+    private volatile boolean dropped;
+
+    /**
+     * @param delayMillis - the time between showing two cards.
+     */
+    TableAnimator(long delayMillis) {
+        this(delayMillis, delayMillis <= 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "table animation");
+            thread.setDaemon(true);
+            return thread;
+        }), false);
+    }
+
+    /**
+     * @param delayMillis - the time between showing two cards.
+     * @param scheduler   - a scheduler with a single thread that is shared with other tables.
+     */
+    TableAnimator(long delayMillis, ScheduledExecutorService scheduler) {
+        this(delayMillis, delayMillis <= 0 ? null : scheduler, true);
+    }
+
+    private TableAnimator(long delayMillis, ScheduledExecutorService scheduler, boolean sharedScheduler) {
+        this.delayMillis = delayMillis;
+        this.scheduler = scheduler;
+        this.sharedScheduler = sharedScheduler;
+        lastShown = System.nanoTime();
+    }
+
+    /**
+     * Shows a card being placed or removed, a table delay after the previous card.
+     */
+    void showCard(Runnable change) {
+        show(change, delayMillis);
+    }
+
+    /**
+     * @return the time at which the last change scheduled is shown (System.currentTimeMillis()), or now if all the
+     *  changes were shown.
+     */
+    synchronized long shownAt() {
+        long now = System.currentTimeMillis();
+        if (scheduler == null) return now;
+        return now + TimeUnit.NANOSECONDS.toMillis(Math.max(0, lastShown - System.nanoTime()));
+    }
+
+    /**
+     * Shows a change right after the change before it.
+     */
+    void show(Runnable change) {
+        show(change, 0);
+    }
+
+    private void show(Runnable change, long delay) {
+        if (scheduler == null) {
+            change.run();
+            return;
+        }
+        synchronized (this) {
+            // the animation was stopped, the game is over
+            if (stopped) return;
+            long now = System.nanoTime();
+            lastShown = (lastShown - now > 0 ? lastShown : now) + TimeUnit.MILLISECONDS.toNanos(delay);
+            pending.add(new Change(lastShown, change));
+            try {
+                // the scheduler may run two tasks that are due at the same time in either order, so a task does not
+                // show its own change but every change that is due, in the order they were made
+                lastChange = scheduler.schedule(this::showDue, lastShown - now, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // the host stopped the shared scheduler
+            }
+        }
+    }
+
+    /**
+     * Shows the changes that are due, in the order they were made. Runs on the scheduler thread.
+     */
+    private void showDue() {
+        while (true) {
+            Change next;
+            synchronized (this) {
+                next = pending.peek();
+                if (next == null || dropped || next.due - System.nanoTime() > 0) return;
+                pending.poll();
+            }
+            next.show.run();
+        }
+    }
+
+    /**
+     * Stops the animation. A scheduler of its own is shut down, a shared scheduler keeps running for the other tables.
+     * @param dropPending - true to drop the changes that were not shown yet, false to wait until they are shown.
+     */
+    void stop(boolean dropPending) {
+        if (scheduler == null) return;
+        ScheduledFuture<?> last;
+        long remaining;
+        synchronized (this) {
+            stopped = true;
+            dropped = dropPending;
+            if (dropPending) pending.clear();
+            last = lastChange;
+            remaining = Math.max(0, lastShown - System.nanoTime()) + TimeUnit.MILLISECONDS.toNanos(delayMillis + STOP_GRACE_MILLIS);
+        }
+        try {
+            if (sharedScheduler) {
+                // the last task shows every change that was not shown before it
+                if (dropPending == false && last != null) last.get(remaining, TimeUnit.NANOSECONDS);
+            } else {
+                if (dropPending) scheduler.shutdownNow();
+                else scheduler.shutdown();
+                scheduler.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException ignored) {}
+    }
+
+    /**
+     * A change and the time it is shown at (System.nanoTime()).
+     */
+    private static final class Change {
+        final long due;
+        final Runnable show;
+
+        Change(long due, Runnable show) {
+            this.due = due;
+            this.show = show;
+        }
+    }
+}
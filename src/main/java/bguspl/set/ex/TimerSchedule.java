@@ -0,0 +1,116 @@
+package bguspl.set.ex;
+
+/**
+ * The deadlines of a timer that is shown on the table: the time it counts down to (if any), the time its warning
+ * starts and the next time the value it displays changes.
+ * The dealer and the frozen players sleep until the next of these deadlines instead of waking up at fixed ticks, so a
+ * display is updated exactly when one of its visible digits changes and never in between.
+ * Each instance is used by a single thread.
+ */
+public class TimerSchedule {
+
+    /**
+     * The resolution of a timer displayed in whole seconds.
+     */
+    public static final long SECOND = 1000;
+
+    /**
+     * The resolution of the countdown during its warning (it is displayed in hundredths of a second).
+     */
+    public static final long WARNING_RESOLUTION = 10;
+
+    /**
+     * The time left when the warning starts.
+     */
+    private final long warningMillis;
+
+    /**
+     * The amount added to the displayed value.
+     */
+    private final long padding;
+
+    /**
+     * The minimal time between two display updates during the warning.
+     */
+    private final long minWarningTick;
+
+    private boolean countingDown;
+    private long deadline;
+    private long start;
+    private long nextTick;
+
+    /**
+     * @param warningMillis  - the time left when the warning starts (non positive for no warning).
+     * @param padding        - the amount added to the displayed value.
+     * @param minWarningTick - the minimal time between two display updates during the warning.
+     */
+    public TimerSchedule(long warningMillis, long padding, long minWarningTick) {
+        this.warningMillis = warningMillis;
+        this.padding = padding;
+        this.minWarningTick = minWarningTick;
+        deadline = Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts counting down to a deadline. The display is due right away.
+     */
+    public void countdownTo(long deadline, long now) {
+        countingDown = true;
+        this.deadline = deadline;
+        nextTick = now;
+    }
+
+    /**
+     * Starts counting up from a time, without a deadline. The display is due right away.
+     */
+    public void countUpFrom(long start, long now) {
+        countingDown = false;
+        this.start = start;
+        deadline = Long.MAX_VALUE;
+        nextTick = now;
+    }
+
+    /**
+     * @return the value to display at the given time.
+     */
+    public long displayed(long now) {
+        return countingDown ? deadline - now + padding : now - start + padding;
+    }
+
+    /**
+     * @return true iff the countdown is in its warning at the given time.
+     */
+    public boolean warning(long now) {
+        return countingDown && warningMillis > 0 && deadline - now <= warningMillis;
+    }
+
+    /**
+     * @return true iff the display should be updated at the given time.
+     */
+    public boolean tickDue(long now) {
+        return now >= nextTick;
+    }
+
+    /**
+     * Records that the display was updated at the given time and schedules the next update for the time its
+     * displayed value changes next.
+     */
+    public void ticked(long now) {
+        long unit = warning(now) ? WARNING_RESOLUTION : SECOND;
+        long from = unit < SECOND ? now + minWarningTick : now;
+        long shown = displayed(from);
+        nextTick = countingDown ? from + Math.floorMod(shown, unit) + 1 : from + unit - Math.floorMod(shown, unit);
+
+        // the warning may start before the next second changes
+        if (countingDown && warningMillis > 0 && !warning(now)) {
+            nextTick = Math.min(nextTick, deadline - warningMillis);
+        }
+    }
+
+    /**
+     * @return the earliest of the next display update and the deadline.
+     */
+    public long nextDeadline() {
+        return Math.min(nextTick, deadline);
+    }
+}
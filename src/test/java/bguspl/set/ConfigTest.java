@@ -0,0 +1,51 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigTest {
+
+    @Test
+    void virtualThreads_AreOffByDefault() {
+        assertFalse(new Config(new MockLogger(), new Properties()).virtualThreads);
+    }
+
+    @Test
+    void virtualThreads_AreReportedUnlessTheJvmSupportsThem() {
+        Properties properties = new Properties();
+        properties.put("VirtualThreads", "True");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+
+        // the players do not silently run on platform threads instead, the game does not start
+        assertTrue(config.virtualThreads);
+        boolean reported = logger.severe.stream().anyMatch(message -> message.startsWith("VirtualThreads=True"));
+        assertEquals(VirtualThreads.supported() == false, reported);
+        if (VirtualThreads.supported()) assertNotNull(VirtualThreads.factory().newThread(() -> {}));
+        else assertThrows(UnsupportedOperationException.class, VirtualThreads::factory);
+    }
+
+    static class MockLogger extends Logger {
+        final List<String> severe = new ArrayList<>();
+
+        protected MockLogger() {
+            super("", null);
+        }
+
+        @Override
+        public void severe(String message) {
+            severe.add(message);
+            super.severe(message);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameHostTest {
+
+    private static Config config() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "2");
+        properties.put("HostedGames", "2");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("RandomSeed", "1");
+        return new Config(new MockLogger(), properties);
+    }
+
+    @Test
+    void hostedGamesHaveNoHumanPlayers() {
+        Config config = config();
+        assertEquals(0, config.humanPlayers);
+        assertEquals(2, config.players);
+    }
+
+    @Test
+    void gamesRunInParallelWithTheirOwnScores() throws Exception {
+        Config config = config();
+        GameHost host = new GameHost(new MockLogger(), config, new UtilImpl(config), 2, null);
+        ScoreBoard[] boards = {new ScoreBoard(config.players), new ScoreBoard(config.players)};
+        Future<?>[] games = {host.submit(boards[0]), host.submit(boards[1])};
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int game = 0; game < games.length; game++) {
+                int[] scores = (int[]) games[game].get();
+
+                // every game shows its own scores, a point of one game never shows up in the other
+                assertArrayEquals(scores, boards[game].scores);
+                int sets = Arrays.stream(scores).sum();
+                assertTrue(sets > 0 && sets <= config.deckSize / 3);
+            }
+            host.shutdown();
+        });
+    }
+
+    /**
+     * A user interface that remembers the scores it displayed.
+     */
+    static class ScoreBoard extends GameHost.NoUserInterface {
+        final int[] scores;
+
+        ScoreBoard(int players) {
+            scores = new int[players];
+        }
+
+        @Override
+        public synchronized void setScore(int player, int score) {
+            scores[player] = score;
+        }
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
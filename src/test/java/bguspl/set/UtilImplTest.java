@@ -0,0 +1,266 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    UtilImpl util;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config(new MockLogger(), new Properties());
+        util = new UtilImpl(config);
+    }
+
+    private void setUpGeometry(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+    }
+
+    /**
+     * Checks if the cards form a legal set by decoding the features of every card from its id.
+     */
+    private boolean referenceTestSet(int... cards) {
+        for (int weight = 1, i = 0; i < config.featureCount; i++, weight *= config.featureSize) {
+            int[] values = new int[cards.length];
+            for (int j = 0; j < cards.length; j++) values[j] = cards[j] / weight % config.featureSize;
+            long distinct = Arrays.stream(values).distinct().count();
+            if (distinct != 1 && distinct != cards.length) return false;
+        }
+        return cards.length > 1;
+    }
+
+    private List<Integer> fullDeck() {
+        return IntStream.range(0, config.deckSize).boxed().collect(Collectors.toCollection(LinkedList::new));
+    }
+
+    /**
+     * Counts the sets in the given cards by testing every triplet.
+     */
+    private int bruteForceSetCount(List<Integer> deck) {
+        int count = 0;
+        for (int i = 0; i < deck.size(); i++)
+            for (int j = i + 1; j < deck.size(); j++)
+                for (int k = j + 1; k < deck.size(); k++)
+                    if (util.testSet(new int[]{deck.get(i), deck.get(j), deck.get(k)})) count++;
+        return count;
+    }
+
+    @Test
+    void findSets_FullDeck() {
+        List<int[]> sets = util.findSets(fullDeck(), Integer.MAX_VALUE);
+
+        // (9^4 - 3^4) / 3! sets in the classic 81 card deck
+        assertEquals(1080, sets.size());
+        assertEquals(1080, sets.stream().map(Arrays::toString).distinct().count());
+        for (int[] set : sets) {
+            assertTrue(util.testSet(set));
+            assertTrue(set[0] < set[1] && set[1] < set[2]);
+        }
+    }
+
+    @Test
+    void findSets_MatchesBruteForce() {
+        List<Integer> deck = IntStream.range(0, config.deckSize).filter(card -> card % 7 != 3 && card % 5 != 1)
+                .boxed().collect(Collectors.toList());
+        assertEquals(bruteForceSetCount(deck), util.findSets(deck, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_RespectsCount() {
+        assertEquals(1, util.findSets(fullDeck(), 1).size());
+        assertEquals(5, util.findSets(fullDeck(), 5).size());
+    }
+
+    @Test
+    void findSets_NoSet() {
+        // 0 = (0,0,0,0), 1 = (0,0,0,1), 3 = (0,0,1,0) and 4 = (0,0,1,1) contain no set
+        assertEquals(0, util.findSets(Arrays.asList(0, 1, 3, 4), Integer.MAX_VALUE).size());
+        assertEquals(1, util.findSets(Arrays.asList(0, 1, 2, 4), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_Parallel() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "6");
+        properties.put("ParallelSearchThreshold", "1");
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+
+        // (9^6 - 3^6) / 3! sets in a 3^6 deck
+        List<int[]> sets = util.findSets(fullDeck(), Integer.MAX_VALUE);
+        assertEquals(88452, sets.size());
+        assertEquals(88452, sets.stream().map(Arrays::toString).distinct().count());
+        assertEquals(7, util.findSets(fullDeck(), 7).size());
+    }
+
+    @Test
+    void forEachSet_StopsWhenAsked() {
+        List<String> sets = new LinkedList<>();
+        assertFalse(util.forEachSet(fullDeck(), set -> {
+            sets.add(Arrays.toString(set));
+            return sets.size() < 3;
+        }));
+        assertEquals(3, sets.stream().distinct().count());
+        assertTrue(util.forEachSet(Arrays.asList(0, 1, 3, 4), set -> false));
+    }
+
+    @Test
+    void anySet_countSets() {
+        assertTrue(util.anySet(fullDeck()));
+        assertFalse(util.anySet(Arrays.asList(0, 1, 3, 4)));
+        assertEquals(1080, util.countSets(fullDeck()));
+        assertEquals(1, util.countSets(Arrays.asList(0, 1, 2, 4)));
+
+        setUpGeometry(4, 3);
+        assertEquals(912, util.countSets(fullDeck()));
+    }
+
+    @Test
+    void arrayOverloads_UseOnlyLength() {
+        // 0, 1, 2 is a set, but it is past the length
+        int[] cards = {0, 1, 3, 4, 2};
+        assertFalse(util.anySet(cards, 4));
+        assertEquals(0, util.countSets(cards, 4));
+        assertEquals(0, util.findSets(cards, 4, Integer.MAX_VALUE).size());
+        assertTrue(util.anySet(cards, 5));
+        assertEquals(1, util.findSets(cards, 5, Integer.MAX_VALUE).size());
+        assertFalse(util.testSet(new int[]{0, 1, 3, 2}, 3));
+        assertTrue(util.testSet(new int[]{0, 1, 2, 4}, 3));
+
+        // the array is not sorted by the search
+        assertEquals("[0, 1, 3, 4, 2]", Arrays.toString(cards));
+    }
+
+    @Test
+    void countSets_Parallel() {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "6");
+        properties.put("ParallelSearchThreshold", "1");
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+        assertEquals(88452, util.countSets(fullDeck()));
+    }
+
+    @Test
+    void testSet_MatchesReference() {
+        for (int i = 0; i < config.deckSize; i += 3)
+            for (int j = i + 1; j < config.deckSize; j += 2)
+                for (int k = j + 1; k < config.deckSize; k += 5) {
+                    boolean expected = referenceTestSet(i, j, k);
+                    assertEquals(expected, util.testSet(new int[]{i, j, k}));
+                    assertEquals(expected, util.testSet(i, j, k));
+                }
+    }
+
+    @Test
+    void testSet_FourValuedFeatures() {
+        setUpGeometry(4, 3);
+        assertTrue(util.testSet(new int[]{0, 21, 42, 63}));
+        for (int i = 0; i < config.deckSize; i++)
+            for (int j = i + 1; j < config.deckSize; j += 3)
+                for (int k = j + 1; k < config.deckSize; k += 7)
+                    for (int l = k + 1; l < config.deckSize; l += 11)
+                        assertEquals(referenceTestSet(i, j, k, l), util.testSet(new int[]{i, j, k, l}));
+    }
+
+    @Test
+    void findSets_FourCardSets() {
+        setUpGeometry(4, 3);
+        List<int[]> sets = util.findSets(fullDeck(), Integer.MAX_VALUE);
+
+        // ((4 + 4!)^3 - 4^3) / 4! sets of 4 cards in a 4^3 deck
+        assertEquals(912, sets.size());
+        assertEquals(912, sets.stream().map(Arrays::toString).distinct().count());
+        for (int[] set : sets) assertTrue(referenceTestSet(set));
+    }
+
+    @Test
+    void findSets_FiveCardSets() {
+        setUpGeometry(5, 2);
+        // ((5 + 5!)^2 - 5^2) / 5! sets of 5 cards in a 5^2 deck
+        assertEquals(130, util.findSets(fullDeck(), Integer.MAX_VALUE).size());
+        assertEquals(3, util.findSets(fullDeck(), 3).size());
+        assertEquals(5, util.setSize());
+    }
+
+    @Test
+    void cardToFeatures_LargeDeck() {
+        // 9^7 cards are too many to precompute, so the words are decoded from the high and low features
+        setUpGeometry(9, 7);
+        int card = config.deckSize - 2;
+        int[] expected = new int[config.featureCount];
+        for (int i = config.featureCount - 1, id = card; i >= 0; i--, id /= 9) expected[i] = id % 9;
+        assertEquals(Arrays.toString(expected), Arrays.toString(util.cardToFeatures(card)));
+        assertEquals(card, config.packedCards.card(config.packedCards.word(card)));
+    }
+
+    @Test
+    void completeSet_CompletesEveryPair() {
+        for (int i = 0; i < config.deckSize; i++)
+            for (int j = i + 1; j < config.deckSize; j++) {
+                int third = util.completeSet(i, j);
+                assertEquals(third, util.completeSet(j, i));
+                assertTrue(third != i && third != j && referenceTestSet(i, j, third));
+            }
+    }
+
+    @Test
+    void completeSet_OffHeapTable(@TempDir Path directory) throws IOException {
+        // 3^7 cards are too many to keep the table on the heap
+        Path file = directory.resolve("completions.bin");
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "7");
+        properties.put("CompletionTableFile", file.toString());
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+
+        assertTrue(Files.size(file) > (long) config.deckSize * (config.deckSize - 1));
+        for (int i = 0; i < config.deckSize; i += 13)
+            for (int j = i + 1; j < config.deckSize; j += 17)
+                assertTrue(referenceTestSet(i, j, util.completeSet(i, j)));
+    }
+
+    @Test
+    void completeSet_NotThreeValued() {
+        setUpGeometry(4, 3);
+        assertEquals(-1, util.completeSet(0, 1));
+    }
+
+    @Test
+    void completeSet_FourCardSets() {
+        setUpGeometry(4, 3);
+        // 0 = (0,0,0), 21 = (1,1,1) and 42 = (2,2,2) are completed by 63 = (3,3,3)
+        assertEquals(63, util.completeSet(new int[]{0, 21, 42}, 3));
+        assertEquals(-1, util.completeSet(new int[]{0, 1, 5}, 3));
+        for (int[] set : util.findSets(fullDeck(), 50))
+            assertEquals(set[3], util.completeSet(set, 3));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -8,9 +8,12 @@ import org.mockito.Mock;
 
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DealerTest {
 
@@ -63,6 +66,56 @@ class DealerTest {
         assertEquals(Thread.State.TERMINATED, dealThread.getState());
     }
 
+    @Test
+    void staleClaimResultIsPublishedRightAway() {
+        // the cards were dealt again since the claim was made
+        CompletableFuture<Claim.Result> result =
+                dealer.claimSet(new Integer[]{0, 1, 2}, player, dealer.getGameVersion() + 1, new int[3]);
+
+        assertTrue(result.isDone());
+        assertEquals(Claim.Result.slotChanged, result.join());
+    }
+
+    @Test
+    void claimOnAChangedSlotIsRejected() {
+        for(int slot = 0; slot < 6; slot++) table.placeCard(slot, slot);
+        Integer[] changed = {0, 1, 2};
+        Integer[] unchanged = {3, 4, 5};
+        int[] changedVersions = new int[3];
+        int[] unchangedVersions = new int[3];
+        for(int i = 0; i < 3; i++){
+            changedVersions[i] = table.getSlotVersion(changed[i]);
+            unchangedVersions[i] = table.getSlotVersion(unchanged[i]);
+        }
+
+        // the card in slot 1 is replaced by the same card, only the slot's version tells it changed
+        table.removeCard(1);
+        table.placeCard(1, 1);
+
+        CompletableFuture<Claim.Result> rejected =
+                dealer.claimSet(changed, player, dealer.getGameVersion(), changedVersions);
+        assertTrue(rejected.isDone());
+        assertEquals(Claim.Result.slotChanged, rejected.join());
+
+        // a claim on other slots is queued for the dealer
+        CompletableFuture<Claim.Result> queued =
+                dealer.claimSet(unchanged, player, dealer.getGameVersion(), unchangedVersions);
+        assertFalse(queued.isDone());
+    }
+
+    @Test
+    void claimIsNotQueuedWhenTheQueueIsFull() {
+        // the dealer is not running, so the first claim fills the queue of its only player
+        CompletableFuture<Claim.Result> first =
+                dealer.claimSet(new Integer[]{0, 1, 2}, player, dealer.getGameVersion(), new int[3]);
+        CompletableFuture<Claim.Result> second =
+                dealer.claimSet(new Integer[]{0, 1, 2}, player, dealer.getGameVersion(), new int[3]);
+
+        assertFalse(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(Claim.Result.queueFull, second.join());
+    }
+
     @Test
     void isValidSetCorrect() {
         table.placeCard(1, 1);
@@ -0,0 +1,60 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DeckTest {
+
+    @Test
+    void draw_PartialDrawKeepsTheOtherCards() {
+        Deck deck = new Deck(12, new SplittableRandom(1));
+        boolean[] drawn = new boolean[12];
+        for (int i = 0; i < 5; i++) {
+            int card = deck.draw();
+            assertFalse(drawn[card]);
+            drawn[card] = true;
+        }
+        assertEquals(7, deck.size());
+
+        int[] left = new int[12];
+        assertEquals(7, deck.copyTo(left, 0));
+        boolean[] inDeck = new boolean[12];
+        for (int i = 0; i < 7; i++) {
+            assertFalse(drawn[left[i]]);
+            inDeck[left[i]] = true;
+        }
+        for (int card = 0; card < 12; card++) {
+            assertEquals(drawn[card], !inDeck[card]);
+            assertEquals(inDeck[card], deck.contains(card));
+        }
+
+        // a card returned to the deck can be drawn again
+        deck.add(left[0] == 0 ? 1 : 0);
+        assertEquals(8, deck.size());
+    }
+
+    @Test
+    void draw_EveryCardIsDrawnEquallyOften() {
+        int cards = 6;
+        int decks = 60000;
+        int[] firstDraws = new int[cards];
+        int[] thirdDraws = new int[cards];
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < decks; i++) {
+            Deck deck = new Deck(cards, random);
+            firstDraws[deck.draw()]++;
+            deck.draw();
+            thirdDraws[deck.draw()]++;
+        }
+
+        // every card is expected 10000 times, a fair draw stays well within 5% of it
+        for (int card = 0; card < cards; card++) {
+            assertEquals(decks / cards, firstDraws[card], decks / cards * 0.05);
+            assertEquals(decks / cards, thirdDraws[card], decks / cards * 0.05);
+        }
+    }
+}
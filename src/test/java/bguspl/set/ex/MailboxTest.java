@@ -0,0 +1,62 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MailboxTest {
+
+    @Test
+    void postClick_WakeBeforeAwaitIsNotLost() throws InterruptedException {
+        Mailbox mailbox = new Mailbox();
+        AtomicBoolean posted = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            // spins instead of blocking, so nothing else takes the permit of the wake
+            while(posted.get() == false) Thread.onSpinWait();
+            mailbox.await();
+        });
+        mailbox.setConsumer(consumer);
+        consumer.start();
+
+        mailbox.postClick(3);
+        posted.set(true);
+
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertEquals(3, mailbox.poll().slot);
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    void take_DeliversTheEventsOfSeveralProducersOnce() {
+        int producers = 4, clicks = 20000;
+        Mailbox mailbox = new Mailbox();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            mailbox.setConsumer(Thread.currentThread());
+            for(int p = 0; p < producers; p++){
+                int producer = p;
+                new Thread(() -> {
+                    for(int i = 0; i < clicks; i++) mailbox.postClick(producer * clicks + i);
+                }).start();
+            }
+
+            int[] nextOf = new int[producers];
+            for(int received = 0; received < producers * clicks; ){
+                Mailbox.Event event = mailbox.take();
+                if(event == null) continue;
+                // each producer's clicks arrive in the order they were posted, so none is lost or taken twice
+                assertEquals(nextOf[event.slot / clicks]++, event.slot % clicks);
+                received++;
+            }
+            for(int p = 0; p < producers; p++) assertEquals(clicks, nextOf[p]);
+            assertTrue(mailbox.isEmpty());
+        });
+    }
+}
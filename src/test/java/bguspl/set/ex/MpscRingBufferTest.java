@@ -0,0 +1,73 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void offer_CapacityIsRoundedUpToAPowerOfTwo() {
+        int[] capacities = {1, 2, 3, 4, 5, 8, 9};
+        int[] expected = {1, 2, 4, 4, 8, 8, 16};
+        for(int i = 0; i < capacities.length; i++){
+            MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(capacities[i]);
+            int offered = 0;
+            while(buffer.offer(offered)) offered++;
+            assertEquals(expected[i], offered);
+            assertEquals(expected[i], buffer.size());
+        }
+    }
+
+    @Test
+    void offer_FullQueueAndWraparound() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        int next = 0, expected = 0;
+        // every round leaves one more element behind, so the indices wrap around a few times
+        for(int round = 0; round < 10; round++){
+            while(buffer.offer(next)) next++;
+            assertEquals(4, buffer.size());
+            assertFalse(buffer.offer(-1));
+
+            for(int i = 0; i < 3; i++) assertEquals(expected++, buffer.poll());
+            assertEquals(1, buffer.size());
+        }
+        assertEquals(expected++, buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+        assertEquals(next, expected);
+    }
+
+    @Test
+    void poll_DeliversEveryOfferFromSeveralProducersOnce() throws InterruptedException {
+        int producers = 4, offers = 20000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++){
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for(int i = 0; i < offers; i++){
+                    // the buffer is mostly full, so most offers are retried
+                    while(buffer.offer(producer * offers + i) == false) Thread.yield();
+                }
+            });
+            threads[p].start();
+        }
+
+        int[] nextOf = new int[producers];
+        for(int received = 0; received < producers * offers; ){
+            Integer element = buffer.poll();
+            if(element == null) { Thread.yield(); continue; }
+            // each producer's elements arrive in the order they were offered, so none is lost or delivered twice
+            assertEquals(nextOf[element / offers]++, element % offers);
+            received++;
+        }
+        for(Thread thread : threads) thread.join();
+
+        assertTrue(buffer.isEmpty());
+        for(int p = 0; p < producers; p++) assertEquals(offers, nextOf[p]);
+    }
+}
@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PauseBarrierTest {
+
+    @Test
+    void awaitPaused_ReleasesTheDealerOnlyWhenEveryThreadPaused() throws InterruptedException {
+        PauseBarrier barrier = new PauseBarrier();
+        barrier.register(2);
+        AtomicInteger resumed = new AtomicInteger();
+        Runnable paused = () -> {
+            if(barrier.pauseAndAwaitResume()) resumed.incrementAndGet();
+        };
+        Thread first = new Thread(paused);
+        Thread second = new Thread(paused);
+        Thread dealerThread = new Thread(barrier::awaitPaused);
+        first.start();
+        dealerThread.start();
+
+        dealerThread.join(200);
+        assertTrue(dealerThread.isAlive());
+
+        second.start();
+        dealerThread.join(1000);
+        assertFalse(dealerThread.isAlive());
+
+        // the threads wait for the dealer to resume them
+        first.join(200);
+        assertTrue(first.isAlive());
+        assertEquals(0, resumed.get());
+
+        barrier.resume();
+        first.join(1000);
+        second.join(1000);
+        assertEquals(2, resumed.get());
+    }
+
+    @Test
+    void awaitPaused_ReleasesTheDealerOncePerPause() throws InterruptedException {
+        PauseBarrier barrier = new PauseBarrier();
+        int threads = 3, rounds = 200;
+        barrier.register(threads);
+        AtomicInteger pauses = new AtomicInteger();
+        Thread[] players = new Thread[threads];
+        for(int i = 0; i < threads; i++){
+            players[i] = new Thread(() -> {
+                do pauses.incrementAndGet();
+                while(barrier.pauseAndAwaitResume());
+            });
+            players[i].start();
+        }
+
+        for(int round = 1; round <= rounds; round++){
+            // the threads are resumed right before, so some may not have left the last resume yet
+            barrier.awaitPaused();
+            assertEquals(round * threads, pauses.get());
+            if(round < rounds) barrier.resume();
+        }
+
+        barrier.terminate();
+        for(Thread thread : players) thread.join(1000);
+        for(Thread thread : players) assertFalse(thread.isAlive());
+        assertEquals(rounds * threads, pauses.get());
+    }
+}
@@ -10,9 +10,16 @@ import org.junit.jupiter.api.AfterEach;
  import org.mockito.Mock;
  import org.mockito.junit.jupiter.MockitoExtension;
 
+ import java.time.Duration;
+ import java.util.Arrays;
+ import java.util.SplittableRandom;
+ import java.util.concurrent.CompletableFuture;
  import java.util.logging.Logger;
 
+ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
  import static org.junit.jupiter.api.Assertions.assertEquals;
+ import static org.junit.jupiter.api.Assertions.assertNull;
+ import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
  import static org.junit.jupiter.api.Assertions.assertTrue;
  import static org.mockito.ArgumentMatchers.eq;
  import static org.mockito.Mockito.verify;
@@ -21,6 +28,7 @@ import org.junit.jupiter.api.AfterEach;
  class PlayerTest {
 
      Player player;
+     PauseBarrier pauseBarrier;
      @Mock
      Util util;
      @Mock
@@ -45,11 +53,14 @@ import org.junit.jupiter.api.AfterEach;
          assertInvariants();
          ui.setScore(0, 0);
 
+        pauseBarrier = new PauseBarrier();
+        player.usePauseBarrier(pauseBarrier);
         Thread playerThread = new Thread(player,"Player");
         playerThread.start();
+        pauseBarrier.awaitPaused();
+        pauseBarrier.resume();
         try{Thread.sleep(100);
         }catch(InterruptedException ignored){}
-        player.resume();
 
      }
 
@@ -57,6 +68,8 @@ import org.junit.jupiter.api.AfterEach;
      void tearDown() {
         assertInvariants();
         player.pause();
+        pauseBarrier.awaitPaused();
+        pauseBarrier.terminate();
         player.terminate();
      }
 
@@ -68,13 +81,13 @@ import org.junit.jupiter.api.AfterEach;
         // calculate the expected score for later
         int expectedScore = player.getScore() + 1;
 
+        CompletableFuture<Claim.Result> result = new CompletableFuture<>();
+        player.setClaimResult(result);
         player.setState(State.waitingForClaimResult);
         player.nudge();
         assertEquals(Player.State.waitingForClaimResult, player.getState());
         
-        Claim claim = new Claim(new Integer[]{1,2,3},player,0);
-        claim.validSet = true;
-        player.notifyClaim(claim);
+        result.complete(Claim.Result.valid);
 
         try{Thread.sleep(100);
         }catch(InterruptedException ignored){}
@@ -88,6 +101,28 @@ import org.junit.jupiter.api.AfterEach;
         verify(ui).setScore(eq(player.id), eq(expectedScore));
      }
 
+     @Test
+     void point_IsAwardedWhenThePauseComesBeforeThePlayerWakesUp() {
+
+        int expectedScore = player.getScore() + 1;
+
+        CompletableFuture<Claim.Result> result = new CompletableFuture<>();
+        player.setClaimResult(result);
+        player.setState(State.waitingForClaimResult);
+        player.nudge();
+        try{Thread.sleep(100);
+        }catch(InterruptedException ignored){}
+
+        // the dealer asks the player to pause right after it published the result, the player is woken up by the pause
+        result.thenRun(player::pause);
+        result.complete(Claim.Result.valid);
+        pauseBarrier.awaitPaused();
+
+        assertEquals(expectedScore, player.getScore());
+        verify(ui).setScore(eq(player.id), eq(expectedScore));
+        pauseBarrier.resume();
+     }
+
      @Test
      void penalty() {
 
@@ -96,12 +131,13 @@ import org.junit.jupiter.api.AfterEach;
         // calculate the expected score for later
         int expectedScore = player.getScore();
 
+        CompletableFuture<Claim.Result> result = new CompletableFuture<>();
+        player.setClaimResult(result);
         player.setState(State.waitingForClaimResult);
         player.nudge();
         assertEquals(Player.State.waitingForClaimResult, player.getState());
         
-        Claim claim = new Claim(new Integer[]{1,2,3},player,0);
-        player.notifyClaim(claim);
+        result.complete(Claim.Result.notASet);
 
         //check if the freeze lasts more than 1 second
         try{Thread.sleep(1000);
@@ -115,4 +151,25 @@ import org.junit.jupiter.api.AfterEach;
         verify(ui).setScore(eq(player.id), eq(expectedScore));
      }
 
+     @Test
+     void ai_GivesUpOnATableWithTooFewCards() {
+        Config config = new Config(logger, "");
+        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        Table table = new Table(env);
+        AISuperSecretIntelligenceService service = new AISuperSecretIntelligenceService(env, dealer, table);
+        SplittableRandom random = new SplittableRandom(1);
+        table.placeCard(0, 4);
+        table.placeCard(1, 9);
+
+        // the draw used to look for a third card forever
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            assertNull(service.getIntel(random));
+            service.gatherIntel(random);
+        });
+
+        table.placeCard(2, 7);
+        Integer[] keys = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> service.getIntel(random));
+        Arrays.sort(keys);
+        assertArrayEquals(new Integer[]{4, 7, 9}, keys);
+     }
  }
@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class RemainingSetsTest {
+
+    Config config;
+    Util util;
+
+    @BeforeEach
+    void setUp() {
+        config = new Config(new MockLogger(), new Properties());
+        util = new UtilImpl(config);
+    }
+
+    @Test
+    void remove_SearchesAgainOnlyWhenAWitnessCardLeaves() {
+        // the cards 0, 1 and 2 differ only in the last feature, card 4 forms no set with two of them
+        assertTrue(util.testSet(0, 1, 2));
+        for (int card = 0; card < 3; card++) {
+            assertFalse(util.testSet(new int[]{card, (card + 1) % 3, 4}));
+        }
+
+        Util searches = spy(util);
+        RemainingSets remainingSets = new RemainingSets(searches, config.deckSize);
+        assertTrue(remainingSets.hasSet());
+
+        // {0, 1, 2} is the only set left among 0, 1, 2 and 4, so it is the witness now
+        for (int card = 3; card < config.deckSize; card++) {
+            if (card == 4) continue;
+            remainingSets.remove(card);
+            assertTrue(remainingSets.hasSet());
+        }
+
+        // a card that is not in the witness leaves the game without a new search
+        clearInvocations(searches);
+        remainingSets.remove(4);
+        assertTrue(remainingSets.hasSet());
+        verify(searches, never()).forEachSet(any(int[].class), anyInt(), any());
+
+        // a witness card leaves the game, the search finds no other set
+        remainingSets.remove(1);
+        assertFalse(remainingSets.hasSet());
+        verify(searches).forEachSet(any(int[].class), anyInt(), any());
+
+        // a card that already left is ignored
+        remainingSets.remove(1);
+        assertFalse(remainingSets.hasSet());
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -4,15 +4,26 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
@@ -25,20 +36,30 @@ class TableTest {
     @BeforeEach
     void setUp() {
 
+        MockLogger logger = new MockLogger();
+        Config config = config(logger, "0");
+        slotToCard = new Integer[config.tableSize];
+        cardToSlot = new Integer[config.deckSize];
+        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        table = new Table(env, slotToCard, cardToSlot);
+    }
+
+    private static Config config(Logger logger, String tableDelaySeconds) {
         Properties properties = new Properties();
         properties.put("Rows", "2");
         properties.put("Columns", "2");
         properties.put("FeatureSize", "3");
         properties.put("FeatureCount", "4");
-        properties.put("TableDelaySeconds", "0");
+        properties.put("TableDelaySeconds", tableDelaySeconds);
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
-        MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
-        table = new Table(env, slotToCard, cardToSlot);
+        return new Config(logger, properties);
+    }
+
+    private static Set<Thread> animationThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("table animation"))
+                .collect(Collectors.toSet());
     }
 
     private int fillSomeSlots() {
@@ -129,6 +150,145 @@ class TableTest {
         assertEquals(null, cardToSlot[77]);
     }
 
+    @Test
+    void setIndex_FollowsPlacedAndRemovedCards() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new MockUserInterface(), new UtilImpl(config));
+        table = new Table(env, new Integer[config.tableSize], new Integer[config.deckSize]);
+
+        // 0, 1, 2 and 0, 4, 8 are the only sets
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 2);
+        assertFalse(table.hasSet());
+        table.placeCard(2, 3);
+        table.placeCard(8, 4);
+        assertEquals(2, table.setCount());
+        assertEquals(2, table.getSetCount());
+
+        table.removeCard(1);
+        assertEquals(1, table.setCount());
+        Iterator<int[]> sets = table.getSets();
+        assertEquals("[0, 4, 8]", Arrays.toString(sets.next()));
+        assertFalse(sets.hasNext());
+
+        table.removeCard(0);
+        assertFalse(table.hasSet());
+    }
+
+    @Test
+    void slotVersions_ChangeOnlyWithTheCardsInTheSlots() {
+        table.placeCard(3, 1);
+        table.placeCard(5, 3);
+        Integer[] claimed = {1, 3};
+        int[] versions = {table.getSlotVersion(1), table.getSlotVersion(3)};
+        assertTrue(table.slotsUnchanged(claimed, versions));
+
+        // a card replaced in another slot does not change the claimed slots
+        table.placeCard(8, 2);
+        table.removeCard(2);
+        assertTrue(table.slotsUnchanged(claimed, versions));
+
+        table.removeCard(3);
+        table.placeCard(5, 3);
+        assertFalse(table.slotsUnchanged(claimed, versions));
+    }
+
+    @Test
+    void animator_ShowsTheChangesOfEverySlotInOrder() {
+        TableAnimator animator = new TableAnimator(5);
+        List<String> shown = Collections.synchronizedList(new ArrayList<>());
+        List<String> expected = new ArrayList<>();
+        for (int slot = 0; slot < 4; slot++) {
+            String card = "card " + slot, token = "token " + slot;
+            animator.showCard(() -> shown.add(card));
+            animator.show(() -> shown.add(token));
+            expected.add(card);
+            expected.add(token);
+        }
+        // the slot is emptied and filled again, its token comes right after the new card
+        animator.showCard(() -> shown.add("removed 0"));
+        animator.showCard(() -> shown.add("card 0 again"));
+        animator.show(() -> shown.add("token 0 again"));
+        expected.addAll(Arrays.asList("removed 0", "card 0 again", "token 0 again"));
+
+        animator.stop(false);
+        assertEquals(expected, shown);
+    }
+
+    @Test
+    void animator_StopsItsThreadWhenTheGameEnds() throws InterruptedException {
+        Set<Thread> before = animationThreads();
+        TableAnimator animator = new TableAnimator(1000);
+        List<String> shown = Collections.synchronizedList(new ArrayList<>());
+        animator.showCard(() -> shown.add("card"));
+        Set<Thread> started = animationThreads();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+
+        // the game was terminated, the card is never shown
+        animator.stop(true);
+        for (Thread thread : started) thread.join(1000);
+        for (Thread thread : started) assertFalse(thread.isAlive());
+        animator.showCard(() -> shown.add("after the end"));
+        assertTrue(shown.isEmpty());
+    }
+
+    @Test
+    void animator_LeavesASharedSchedulerRunning() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        TableAnimator ended = new TableAnimator(1000, scheduler);
+        TableAnimator running = new TableAnimator(5, scheduler);
+        List<String> shown = Collections.synchronizedList(new ArrayList<>());
+        ended.showCard(() -> shown.add("dropped"));
+        running.showCard(() -> shown.add("shown"));
+
+        ended.stop(true);
+        assertFalse(scheduler.isShutdown());
+        running.stop(false);
+        assertEquals(List.of("shown"), shown);
+        scheduler.shutdown();
+    }
+
+    @Test
+    void shownAt_IsWhenTheLastCardIsShown() {
+        MockLogger logger = new MockLogger();
+        Env env = new Env(logger, config(logger, "0.2"), new MockUserInterface(), new MockUtil());
+        Table table = new Table(env);
+        assertTrue(table.shownAt() <= System.currentTimeMillis());
+
+        long before = System.currentTimeMillis();
+        table.placeCard(3, 0);
+        table.placeCard(5, 1);
+        table.placeCard(8, 2);
+        long shownAt = table.shownAt();
+        assertTrue(shownAt >= before + 550 && shownAt <= System.currentTimeMillis() + 600);
+
+        table.stopAnimation(false);
+        assertTrue(table.shownAt() <= System.currentTimeMillis());
+    }
+
+    @Test
+    void placeToken_OnlyOnACardThatIsShown() {
+        MockLogger logger = new MockLogger();
+        Env env = new Env(logger, config(logger, "0.2"), new MockUserInterface(), new MockUtil());
+        Table table = new Table(env);
+
+        table.placeCard(3, 1);
+        assertFalse(table.isSlotShown(1));
+        assertFalse(table.placeToken(0, 1));
+
+        // the empty slots are shown as they are
+        assertTrue(table.isSlotShown(0));
+
+        table.stopAnimation(false);
+        assertTrue(table.isSlotShown(1));
+        assertTrue(table.placeToken(0, 1));
+    }
+
 
 
     static class MockUserInterface implements UserInterface {
@@ -0,0 +1,66 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerScheduleTest {
+
+    @Test
+    void countdownTo_TicksWhenTheDisplayedValueChanges() {
+        TimerSchedule schedule = new TimerSchedule(5000, 0, 0);
+        schedule.countdownTo(60000, 0);
+        assertTrue(schedule.tickDue(0));
+        assertEquals(0, schedule.nextDeadline());
+
+        // 60000 is shown until the first millisecond passes, then 59999 until the next second
+        schedule.ticked(0);
+        assertEquals(1, schedule.nextDeadline());
+        schedule.ticked(1);
+        assertEquals(1001, schedule.nextDeadline());
+        assertFalse(schedule.tickDue(1000));
+        assertTrue(schedule.tickDue(1001));
+
+        // the warning starts before the next second changes
+        schedule.ticked(54500);
+        assertEquals(55000, schedule.nextDeadline());
+
+        // during the warning the display changes every hundredth of a second
+        assertTrue(schedule.warning(55000));
+        schedule.ticked(55000);
+        assertEquals(55001, schedule.nextDeadline());
+        schedule.ticked(55001);
+        assertEquals(55011, schedule.nextDeadline());
+
+        // the deadline comes before the next tick
+        schedule.ticked(59999);
+        assertEquals(60000, schedule.nextDeadline());
+    }
+
+    @Test
+    void countdownTo_WarningTicksAreAtLeastTheMinimalTickApart() {
+        TimerSchedule schedule = new TimerSchedule(5000, 0, 25);
+        schedule.countdownTo(60000, 55001);
+        schedule.ticked(55001);
+        // 4974 is shown 25 ms later, the next hundredth starts 5 ms after that
+        assertEquals(55031, schedule.nextDeadline());
+    }
+
+    @Test
+    void countUpFrom_TicksOnWholeSeconds() {
+        TimerSchedule schedule = new TimerSchedule(5000, 0, 0);
+        schedule.countUpFrom(1000, 1000);
+        assertTrue(schedule.tickDue(1000));
+        assertFalse(schedule.warning(1000));
+
+        schedule.ticked(1000);
+        assertEquals(2000, schedule.nextDeadline());
+
+        // a late tick is followed by the next whole second, not by a full second later
+        schedule.ticked(2300);
+        assertEquals(1300, schedule.displayed(2300));
+        assertEquals(3000, schedule.nextDeadline());
+    }
+}